@@ -1,13 +1,25 @@
 package burp;
 
+import com.onepassword.burpanalyzer.processing.DecryptedPayloadCache;
+import com.onepassword.burpanalyzer.processing.RequestMACGenerateError;
 import com.onepassword.burpanalyzer.ui.OnePasswordSessionTab;
-import com.onepassword.burpanalyzer.util.OnePasswordHeaders;
+import com.onepassword.burpanalyzer.util.HeaderIndex;
+import com.onepassword.burpanalyzer.util.RawHeaderFilter;
+import com.onepassword.burpanalyzer.util.RequestResigner;
 import com.onepassword.burpanalyzer.util.SessionStateCache;
+import com.onepassword.burpanalyzer.util.SessionStatePersistence;
+
+import java.time.Clock;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 @SuppressWarnings("unused")
-public class BurpExtender implements IBurpExtender, IMessageEditorTabFactory, IProxyListener {
+public class BurpExtender implements IBurpExtender, IMessageEditorTabFactory, IProxyListener, IExtensionStateListener, ISessionHandlingAction {
     private IBurpExtenderCallbacks callbacks;
     private IExtensionHelpers helpers;
+    private SessionStatePersistence sessionStatePersistence;
+    private final RequestResigner requestResigner = new RequestResigner(SessionStateCache.getInstance());
+    private final Set<RequestMACGenerateError> reportedResignErrors = ConcurrentHashMap.newKeySet();
 
     @Override
     public void registerExtenderCallbacks(IBurpExtenderCallbacks callbacks) {
@@ -18,6 +30,27 @@ public class BurpExtender implements IBurpExtender, IMessageEditorTabFactory, IP
 
         callbacks.registerMessageEditorTabFactory(this);
         callbacks.registerProxyListener(this);
+        callbacks.registerExtensionStateListener(this);
+        callbacks.registerSessionHandlingAction(this);
+
+        // Restore session keys and request ids from earlier Burp runs. This loads in the background.
+        if(SessionStatePersistence.isEnabled()) {
+            sessionStatePersistence = new SessionStatePersistence(
+                SessionStatePersistence.defaultFile(), SessionStateCache.getInstance(), Clock.systemUTC(), callbacks::printError
+            );
+            sessionStatePersistence.start();
+        }
+    }
+
+    @Override
+    public void extensionUnloaded() {
+        if(sessionStatePersistence != null) {
+            sessionStatePersistence.stop();
+        }
+
+        // Shows in the extension's output tab, to help tune the cache limits
+        callbacks.printOutput("Session cache: " + SessionStateCache.getInstance().getStatistics());
+        callbacks.printOutput("Decrypted payload cache: " + DecryptedPayloadCache.getInstance().getStatistics());
     }
 
     @Override
@@ -30,11 +63,18 @@ public class BurpExtender implements IBurpExtender, IMessageEditorTabFactory, IP
     public void processProxyMessage(boolean messageIsRequest, IInterceptedProxyMessage message) {
         if(messageIsRequest) {
             final var info = message.getMessageInfo();
-            final var headers = helpers.analyzeRequest(info.getHttpService(), info.getRequest()).getHeaders();
+            final var request = info.getRequest();
+            if(!RawHeaderFilter.mayBeOnePasswordRequest(request)) {
+                return;
+            }
+
+            final var headers = helpers.analyzeRequest(info.getHttpService(), request).getHeaders();
+
+            final var headerIndex = HeaderIndex.of(headers);
 
-            if(OnePasswordHeaders.isOnePasswordRequest(headers)) {
-                final var sessionId = OnePasswordHeaders.parseSessionIdFromHeaders(headers);
-                final var requestId = OnePasswordHeaders.parseRequestIdFromHeaders(headers);
+            if(headerIndex.hasMacHeader()) {
+                final var sessionId = headerIndex.getSessionId();
+                final var requestId = headerIndex.getRequestId();
 
                 if(sessionId.isPresent() && requestId.isPresent()) {
                     SessionStateCache.getInstance().setLatestRequestId(sessionId.get(), requestId.get());
@@ -42,4 +82,32 @@ public class BurpExtender implements IBurpExtender, IMessageEditorTabFactory, IP
             }
         }
     }
+
+    @Override
+    public String getActionName() {
+        return "Re-sign 1Password request MAC";
+    }
+
+    // Used from session handling rules, e.g. for Intruder and Scanner, so every request goes out with an unused request id
+    @Override
+    public void performAction(IHttpRequestResponse currentRequest, IHttpRequestResponse[] macroItems) {
+        final var request = currentRequest.getRequest();
+        if(!RawHeaderFilter.mayBeOnePasswordRequest(request)) {
+            return;
+        }
+
+        final var requestInfo = helpers.analyzeRequest(currentRequest.getHttpService(), request);
+        final var headerIndex = HeaderIndex.of(requestInfo.getHeaders());
+        if(!headerIndex.hasMacHeader()) {
+            return;
+        }
+
+        final var resigned = requestResigner.resign(requestInfo, headerIndex, request);
+        if(resigned.isOk()) {
+            currentRequest.setRequest(resigned.getResult());
+        } else if(reportedResignErrors.add(resigned.getError())) {
+            // Sent unchanged. Only reported once per kind of failure, as Intruder can send thousands of these.
+            callbacks.printError("Can't re-sign request: " + resigned.getError().getReadableError());
+        }
+    }
 }
@@ -0,0 +1,70 @@
+package com.onepassword.burpanalyzer.model;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Base64;
+
+// Decodes a slice of base64 URL text a chunk at a time. Base64.Decoder.wrap() works a few bytes per call,
+// which made it the slowest part of streaming decryption, so whole chunks go through the bulk decoder instead.
+final class Base64UrlInputStream extends InputStream {
+    private static final int CHUNK_CHARS = 64 * 1024; // A multiple of 4, so chunks never split a group
+
+    private final byte[] encoded;
+    private final int end;
+    private int position;
+
+    private final byte[] chunk = new byte[CHUNK_CHARS];
+    private final byte[] decoded = new byte[CHUNK_CHARS / 4 * 3];
+    private int decodedPosition = 0;
+    private int decodedLimit = 0;
+
+    Base64UrlInputStream(byte[] encoded, int start, int end) {
+        this.encoded = encoded;
+        this.position = start;
+        this.end = end;
+    }
+
+    @Override
+    public int read() throws IOException {
+        final var single = new byte[1];
+        return read(single, 0, 1) < 0 ? -1 : single[0] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if(len == 0) {
+            return 0;
+        }
+        if(decodedPosition == decodedLimit && !fill()) {
+            return -1;
+        }
+
+        final int count = Math.min(len, decodedLimit - decodedPosition);
+        System.arraycopy(decoded, decodedPosition, b, off, count);
+        decodedPosition += count;
+        return count;
+    }
+
+    private boolean fill() throws IOException {
+        if(position >= end) {
+            return false;
+        }
+
+        final int length = Math.min(CHUNK_CHARS, end - position);
+        // Only the last chunk can be shorter, so it's the only one that needs its own array
+        final var source = length == CHUNK_CHARS ? chunk : new byte[length];
+        System.arraycopy(encoded, position, source, 0, length);
+        position += length;
+
+        try {
+            decodedLimit = Base64.getUrlDecoder().decode(source, decoded);
+        } catch(IllegalArgumentException e) {
+            throw new IOException("Not valid base64 URL", e);
+        }
+        if(position < end && decodedLimit != decoded.length) {
+            throw new IOException("Padding before the end of base64 URL"); // Decoding it as a whole would fail too
+        }
+        decodedPosition = 0;
+        return true;
+    }
+}
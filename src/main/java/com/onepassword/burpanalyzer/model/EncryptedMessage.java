@@ -1,21 +1,21 @@
 package com.onepassword.burpanalyzer.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
 import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.onepassword.burpanalyzer.processing.CryptoEngine;
 import com.onepassword.burpanalyzer.processing.DecryptionError;
 import com.onepassword.burpanalyzer.processing.Result;
 import com.onepassword.burpanalyzer.util.Base64UrlDeserializer;
 import com.onepassword.burpanalyzer.util.Base64UrlSerializer;
 
-import javax.crypto.BadPaddingException;
-import javax.crypto.Cipher;
-import javax.crypto.IllegalBlockSizeException;
-import javax.crypto.NoSuchPaddingException;
-import javax.crypto.spec.GCMParameterSpec;
-import javax.crypto.spec.SecretKeySpec;
-import java.security.InvalidAlgorithmParameterException;
-import java.security.InvalidKeyException;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.Arrays;
 import java.util.Objects;
@@ -49,10 +49,22 @@ public class EncryptedMessage {
     @JsonProperty("data")
     @JsonSerialize(using=Base64UrlSerializer.class)
     @JsonDeserialize(using=Base64UrlDeserializer.class)
-    private byte[] data;
+    private volatile byte[] data;
+
+    // Set by EncryptedMessageReader: data is still base64 URL text in encodedData, starting right after its opening quote.
+    // It's only decoded when first needed, as most lookups just want the key id or IV.
+    private byte[] encodedData;
+    private int encodedDataStart;
+    private int encodedDataLimit;
 
     private boolean isEmpty = false;
 
+    private volatile byte[] dataDigest;
+
+    // Above this many base64 characters, lazily read data is decrypted in a streaming fashion
+    private static final int STREAMING_THRESHOLD_BYTES = 1024 * 1024;
+    private static final int TAG_LENGTH_BYTES = 16;
+
     @Override
     public String toString() {
         if(isEmpty) {
@@ -63,7 +75,7 @@ public class EncryptedMessage {
                     ", encryption=" + encryption +
                     ", contentType=" + contentType +
                     ", iv=" + Arrays.toString(iv) +
-                    ", data=" + Arrays.toString(data) +
+                    ", data=" + Arrays.toString(data()) +
                     '}';
         }
     }
@@ -76,7 +88,7 @@ public class EncryptedMessage {
         if(isEmpty && that.isEmpty) {
             return true;
         } else {
-            return Objects.equals(keyIdentifier, that.keyIdentifier) && encryption == that.encryption && contentType == that.contentType && Arrays.equals(iv, that.iv) && Arrays.equals(data, that.data);
+            return Objects.equals(keyIdentifier, that.keyIdentifier) && encryption == that.encryption && contentType == that.contentType && Arrays.equals(iv, that.iv) && Arrays.equals(data(), that.data());
         }
     }
 
@@ -84,7 +96,7 @@ public class EncryptedMessage {
     public int hashCode() {
         int result = Objects.hash(keyIdentifier, encryption, contentType);
         result = 31 * result + Arrays.hashCode(iv);
-        result = 31 * result + Arrays.hashCode(data);
+        result = 31 * result + Arrays.hashCode(data());
         return result;
     }
 
@@ -98,41 +110,181 @@ public class EncryptedMessage {
         this.data = data;
     }
 
+    EncryptedMessage(String keyIdentifier, Encryption encryption, ContentType contentType, byte[] iv, byte[] encodedData, int encodedDataStart, int encodedDataLimit) {
+        this(keyIdentifier, encryption, contentType, iv, null);
+        this.encodedData = encodedData;
+        this.encodedDataStart = encodedDataStart;
+        this.encodedDataLimit = encodedDataLimit;
+    }
+
     public static EncryptedMessage empty() {
         var res = new EncryptedMessage();
         res.isEmpty = true;
         return res;
     }
 
+    @JsonIgnore
+    public boolean isEmpty() {
+        return isEmpty;
+    }
+
     public Result<DecryptedPayload, DecryptionError> decrypt(byte[] sessionKey) {
         if(isEmpty) {
             return new Result<>(new DecryptedPayload(new byte[0]));
         }
+        if(isMissingField()) {
+            return new Result<>(DecryptionError.MISSING_FIELD);
+        }
+
+        // Large bodies that haven't been decoded yet are streamed, so the decoded ciphertext never exists as a whole.
+        // The plaintext still does: callers that must not hold it in memory decrypt into a sink instead.
+        if(data == null && encodedData != null) {
+            final int end = EncryptedMessageReader.findDataEnd(encodedData, encodedDataStart, encodedDataLimit);
+            if(end - encodedDataStart > STREAMING_THRESHOLD_BYTES) {
+                return decryptStreaming(sessionKey, end);
+            }
+        }
+
+        final var ciphertext = data();
+        if(ciphertext == null) {
+            return new Result<>(DecryptionError.INVALID_DATA);
+        }
+
+        final var output = CryptoEngine.getInstance().decrypt(sessionKey, iv, ciphertext);
+        if(!output.isOk()) {
+            return new Result<>(output.getError());
+        }
+
+        return new Result<>(new DecryptedPayload(output.getResult()));
+    }
+
+    // Decrypts into sink without ever holding the whole ciphertext or plaintext in memory.
+    // Plaintext is written before its authenticity is known: if this fails, discard what was written.
+    public Result<Long, DecryptionError> decrypt(byte[] sessionKey, OutputStream sink) {
+        if(isEmpty) {
+            return new Result<>(0L);
+        }
+        if(isMissingField()) {
+            return new Result<>(DecryptionError.MISSING_FIELD);
+        }
+
+        final var ciphertext = openData();
+        if(ciphertext == null) {
+            return new Result<>(DecryptionError.INVALID_DATA);
+        }
+        return CryptoEngine.getInstance().decrypt(sessionKey, iv, ciphertext, sink);
+    }
+
+    // Length the plaintext has if the message decrypts, worked out without decoding or decrypting anything
+    @JsonIgnore
+    public long getPlaintextLength() {
+        if(isEmpty || isMissingField()) {
+            return 0;
+        }
+        if(data != null) {
+            return Math.max(0, data.length - TAG_LENGTH_BYTES);
+        }
+
+        final int end = EncryptedMessageReader.findDataEnd(encodedData, encodedDataStart, encodedDataLimit);
+        return end < 0 ? 0 : plaintextLength(end);
+    }
 
-        Cipher AesGcm;
+    // SHA-256 of the ciphertext, or null if it isn't valid. Lazily read data is hashed without decoding all of it at once.
+    public byte[] dataDigest() {
+        var digest = dataDigest;
+        if(digest == null && !isEmpty) {
+            final var ciphertext = openData();
+            if(ciphertext == null) {
+                return null;
+            }
 
-        try {
-            AesGcm = Cipher.getInstance("AES/GCM/NoPadding");
-        } catch (NoSuchAlgorithmException | NoSuchPaddingException e) {
-            return new Result<>(DecryptionError.INVALID_JVM_SETUP);
+            try {
+                final var sha256 = MessageDigest.getInstance("SHA-256");
+                try(final var hashed = new DigestInputStream(ciphertext, sha256)) {
+                    hashed.transferTo(OutputStream.nullOutputStream());
+                }
+                digest = sha256.digest();
+            } catch(NoSuchAlgorithmException | IOException e) {
+                return null;
+            }
+            dataDigest = digest;
         }
+        return digest == null ? null : digest.clone();
+    }
 
-        var keySpec = new SecretKeySpec(sessionKey, 0, sessionKey.length, "AES");
-        var gcmParamSpec = new GCMParameterSpec(128, iv);
+    private boolean isMissingField() {
+        return iv == null || (data == null && encodedData == null);
+    }
 
-        try {
-            AesGcm.init(Cipher.DECRYPT_MODE, keySpec, gcmParamSpec);
-        } catch (InvalidKeyException | InvalidAlgorithmParameterException e) {
-            return new Result<>(DecryptionError.INVALID_SESSION_KEY);
+    // The ciphertext as a stream, or null if it isn't valid
+    private InputStream openData() {
+        final var decoded = data;
+        if(decoded != null || encodedData == null) {
+            return new ByteArrayInputStream(decoded != null ? decoded : new byte[0]);
         }
 
-        byte[] output;
-        try {
-            output = AesGcm.doFinal(data);
-        } catch (IllegalBlockSizeException | BadPaddingException e) {
-            return new Result<>(DecryptionError.INVALID_SESSION_KEY);
+        final int end = EncryptedMessageReader.findDataEnd(encodedData, encodedDataStart, encodedDataLimit);
+        if(end < 0) {
+            return null;
         }
+        return new Base64UrlInputStream(encodedData, encodedDataStart, end);
+    }
+
+    private Result<DecryptedPayload, DecryptionError> decryptStreaming(byte[] sessionKey, int encodedDataEnd) {
+        final var plaintext = new FixedSizeOutput((int) plaintextLength(encodedDataEnd));
+
+        final var result = decrypt(sessionKey, plaintext);
+        if(!result.isOk()) {
+            return new Result<>(result.getError());
+        }
+        return new Result<>(new DecryptedPayload(plaintext.toByteArray()));
+    }
+
+    private long plaintextLength(int encodedDataEnd) {
+        // Every 4 base64 characters hold 3 bytes, and the plaintext is as long as the ciphertext without its tag
+        int encodedLength = encodedDataEnd - encodedDataStart;
+        while(encodedLength > 0 && encodedData[encodedDataStart + encodedLength - 1] == '=') {
+            encodedLength--;
+        }
+        final long ciphertextLength = encodedLength / 4 * 3L + Math.max(0, encodedLength % 4 - 1);
+        return Math.max(0, ciphertextLength - TAG_LENGTH_BYTES);
+    }
 
-        return new Result<>(new DecryptedPayload(output));
+    // Like ByteArrayOutputStream, but for a known size, so the result needs no growing or final copy
+    private static class FixedSizeOutput extends OutputStream {
+        private final byte[] buffer;
+        private int size = 0;
+
+        FixedSizeOutput(int capacity) {
+            this.buffer = new byte[capacity];
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if(len > buffer.length - size) {
+                throw new IOException("More plaintext than expected");
+            }
+            System.arraycopy(b, off, buffer, size, len);
+            size += len;
+        }
+
+        byte[] toByteArray() {
+            return size == buffer.length ? buffer : Arrays.copyOf(buffer, size);
+        }
+    }
+
+    // The decoded data, or null if there is none or it isn't valid base64 URL
+    private byte[] data() {
+        var result = data;
+        if(result == null && encodedData != null) {
+            result = EncryptedMessageReader.decodeData(encodedData, encodedDataStart, encodedDataLimit);
+            data = result;
+        }
+        return result;
     }
 }
@@ -0,0 +1,131 @@
+package com.onepassword.burpanalyzer.model;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonToken;
+import com.onepassword.burpanalyzer.processing.EncryptedMessageProcessingError;
+import com.onepassword.burpanalyzer.processing.Result;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Base64;
+
+// Reads an EncryptedMessage straight off the raw JSON bytes with Jackson's streaming parser.
+// kid, enc, cty and iv are read right away. data is usually by far the biggest part of the message,
+// so it's left where it is and only decoded if the message gets decrypted. The parser still skips over it
+// to check the rest of the object, which only looks for the closing quote and copies nothing.
+public final class EncryptedMessageReader {
+    private EncryptedMessageReader() {}
+
+    public static Result<EncryptedMessage, EncryptedMessageProcessingError> read(JsonFactory factory, byte[] buffer, int offset, int length) {
+        String keyIdentifier = null;
+        EncryptedMessage.Encryption encryption = null;
+        EncryptedMessage.ContentType contentType = null;
+        byte[] iv = null;
+        int dataStart = -1;
+
+        try(final var parser = factory.createParser(buffer, offset, length)) {
+            if(parser.nextToken() != JsonToken.START_OBJECT) {
+                return new Result<>(EncryptedMessageProcessingError.INVALID_BODY);
+            }
+
+            while(parser.nextToken() == JsonToken.FIELD_NAME) {
+                final var field = parser.currentName();
+                final var value = parser.nextToken();
+
+                if(value == JsonToken.VALUE_NULL) {
+                    continue;
+                }
+                if(value != JsonToken.VALUE_STRING) {
+                    return new Result<>(EncryptedMessageProcessingError.INVALID_BODY);
+                }
+
+                switch(field) {
+                    case "kid":
+                        keyIdentifier = parser.getText();
+                        break;
+                    case "enc":
+                        if(!"A256GCM".equals(parser.getText())) {
+                            return new Result<>(EncryptedMessageProcessingError.INVALID_BODY);
+                        }
+                        encryption = EncryptedMessage.Encryption.AES256_GCM;
+                        break;
+                    case "cty":
+                        if(!"b5+jwk+json".equals(parser.getText())) {
+                            return new Result<>(EncryptedMessageProcessingError.INVALID_BODY);
+                        }
+                        contentType = EncryptedMessage.ContentType.B5_JWK_JSON;
+                        break;
+                    case "iv":
+                        iv = decode(parser.getText());
+                        if(iv == null) {
+                            return new Result<>(EncryptedMessageProcessingError.INVALID_BODY);
+                        }
+                        break;
+                    case "data":
+                        // The token starts at the opening quote, relative to offset
+                        dataStart = offset + (int) parser.currentTokenLocation().getByteOffset() + 1;
+                        parser.skipChildren(); // Left unread, the next token skips past it
+                        break;
+                    default:
+                        return new Result<>(EncryptedMessageProcessingError.INVALID_BODY);
+                }
+            }
+
+            if(parser.currentToken() != JsonToken.END_OBJECT) {
+                return new Result<>(EncryptedMessageProcessingError.INVALID_BODY);
+            }
+        } catch(IOException e) {
+            return new Result<>(EncryptedMessageProcessingError.INVALID_BODY);
+        }
+
+        if(keyIdentifier == null || iv == null || dataStart < 0) {
+            return new Result<>(EncryptedMessageProcessingError.INVALID_BODY);
+        }
+        return new Result<>(new EncryptedMessage(keyIdentifier, encryption, contentType, iv, buffer, dataStart, offset + length));
+    }
+
+    // End of the base64 URL string starting at start, i.e. the position of its closing quote, or -1 if it isn't terminated
+    static int findDataEnd(byte[] buffer, int start, int limit) {
+        for(int end = start; end < limit; end++) {
+            if(buffer[end] == '"') {
+                return end == start ? -1 : end;
+            }
+            if(buffer[end] == '\\') {
+                return -1; // Base64 URL never needs escaping
+            }
+        }
+        return -1;
+    }
+
+    // Decodes the base64 URL string starting at start and ending at the next quote, null if it isn't valid
+    static byte[] decodeData(byte[] buffer, int start, int limit) {
+        final int end = findDataEnd(buffer, start, limit);
+        if(end < 0) {
+            return null;
+        }
+
+        try {
+            final var decoded = Base64.getUrlDecoder().decode(ByteBuffer.wrap(buffer, start, end - start));
+            if(decoded.hasArray() && decoded.arrayOffset() == 0 && decoded.position() == 0 && decoded.array().length == decoded.remaining()) {
+                return decoded.array(); // Usually exactly sized already, so skip the copy
+            }
+            final var result = new byte[decoded.remaining()];
+            decoded.get(result);
+            return result;
+        } catch(IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static byte[] decode(String base64Url) {
+        if(base64Url.isEmpty()) {
+            return null;
+        }
+
+        try {
+            return Base64.getUrlDecoder().decode(base64Url);
+        } catch(IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
@@ -1,18 +1,11 @@
 package com.onepassword.burpanalyzer.model;
 
 import com.onepassword.burpanalyzer.processing.RequestMACGenerateError;
+import com.onepassword.burpanalyzer.processing.RequestMACSigner;
 import com.onepassword.burpanalyzer.processing.Result;
 
-import javax.crypto.Mac;
-import javax.crypto.spec.SecretKeySpec;
 import java.net.URL;
-import java.nio.charset.StandardCharsets;
-import java.security.InvalidKeyException;
-import java.security.NoSuchAlgorithmException;
-import java.util.Arrays;
-import java.util.Base64;
 import java.util.Locale;
-import java.util.Optional;
 
 public class RequestMAC {
     public enum VersionIndicator {
@@ -70,13 +63,13 @@ public class RequestMAC {
         this.sessionId = sessionId;
         this.requestId = requestId;
         this.host = requestUrl.getHost().toLowerCase(Locale.ROOT);
-        if(requestUrl.getPath() != null) {
-            // drop leading '/' with Java's horrific IntStream returning String::chars() method
-            this.uriPath = requestUrl.getPath().chars()
-                    .mapToObj(i -> (char) i)
-                    .dropWhile(c -> c == '/')
-                    .collect(StringBuilder::new, StringBuilder::appendCodePoint, StringBuilder::append)
-                    .toString();
+        final var path = requestUrl.getPath();
+        if(path != null) {
+            int pathStart = 0;
+            while(pathStart < path.length() && path.charAt(pathStart) == '/') {
+                pathStart++;
+            }
+            this.uriPath = path.substring(pathStart);
         } else {
             this.uriPath = "";
         }
@@ -98,54 +91,12 @@ public class RequestMAC {
         this.queryString = queryString;
     }
 
-    private final static String DERIVATION_MESSAGE = "He never wears a Mac, in the pouring rain. Very strange.";
-
     public Result<String, RequestMACGenerateError> generateRequestHeader(byte[] sessionKey) {
-        var authString = String.join("|",
-            sessionId,
-            requestMethod.toString().toUpperCase(Locale.ROOT),
-            host + "/" + uriPath + "?" + queryString,
-            versionIndicator.versionStr,
-            String.valueOf(requestId)
-        );
-
-        Mac hmacSHA256forSessionMac;
-        try {
-            hmacSHA256forSessionMac = Mac.getInstance("HmacSHA256");
-        } catch(NoSuchAlgorithmException e) {
-            return new Result<>(RequestMACGenerateError.INVALID_JVM_SETUP);
-        }
-
-        var key = new SecretKeySpec(sessionKey, "HmacSHA256");
-        try {
-            hmacSHA256forSessionMac.init(key);
-        } catch (InvalidKeyException e) {
-            return new Result<>(RequestMACGenerateError.INVALID_SESSION_KEY);
-        }
-        var sessionMACKey = hmacSHA256forSessionMac.doFinal(DERIVATION_MESSAGE.getBytes(StandardCharsets.US_ASCII));
-
-        Mac hmacSHA256forFinalMac;
-        try {
-            hmacSHA256forFinalMac = Mac.getInstance("HmacSHA256");
-        } catch(NoSuchAlgorithmException e) {
-            return new Result<>(RequestMACGenerateError.INVALID_JVM_SETUP);
+        final var signer = RequestMACSigner.forSessionKey(sessionKey);
+        if(!signer.isOk()) {
+            return new Result<>(signer.getError());
         }
 
-        try {
-            hmacSHA256forFinalMac.init(new SecretKeySpec(sessionMACKey, "HmacSHA256"));
-        } catch (InvalidKeyException e) {
-            return new Result<>(RequestMACGenerateError.INVALID_SESSION_KEY);
-        }
-
-        byte[] headerMAC = hmacSHA256forFinalMac.doFinal(authString.getBytes(StandardCharsets.UTF_8));
-        byte[] headerMACTruncated = Arrays.copyOfRange(headerMAC, 0, 12);
-
-        String macString = Base64.getUrlEncoder().encodeToString(headerMACTruncated);
-
-        return new Result<>(String.join("|",
-            versionIndicator.versionStr,
-            String.valueOf(requestId),
-            macString
-        ));
+        return signer.getResult().sign(this);
     }
 }
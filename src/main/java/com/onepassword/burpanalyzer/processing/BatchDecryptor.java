@@ -0,0 +1,138 @@
+package com.onepassword.burpanalyzer.processing;
+
+import com.onepassword.burpanalyzer.model.DecryptedPayload;
+import com.onepassword.burpanalyzer.model.EncryptedMessage;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Decrypts many messages at once, e.g. every captured response of a session, spread over all cores.
+// Work is split fork/join style, so a worker that finishes its share early steals from the others,
+// which keeps every core busy even when message sizes differ a lot. Results come back in input order.
+public class BatchDecryptor {
+    private static final BatchDecryptor instance = new BatchDecryptor();
+
+    public static BatchDecryptor getInstance() {
+        return instance;
+    }
+
+    // Looks up the session key for a key identifier, or empty if it isn't known
+    public interface SessionKeyResolver {
+        Optional<byte[]> resolve(String keyIdentifier);
+    }
+
+    // Below this many messages a range is decrypted in place instead of being split further
+    private static final int SPLIT_THRESHOLD = 4;
+
+    private final ForkJoinPool pool;
+
+    private BatchDecryptor() {
+        this.pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors(), new WorkerThreadFactory(), null, false);
+    }
+
+    public List<Result<DecryptedPayload, DecryptionError>> decryptAll(Collection<EncryptedMessage> messages, SessionKeyResolver sessionKeys) {
+        final var batch = messages.toArray(new EncryptedMessage[0]);
+        @SuppressWarnings("unchecked")
+        final Result<DecryptedPayload, DecryptionError>[] results = new Result[batch.length];
+
+        // Keys are resolved up front on the calling thread, so the resolver doesn't have to be thread safe
+        // and is asked once per key identifier rather than once per message
+        final var keys = resolveKeys(batch, sessionKeys);
+
+        final var decryption = new DecryptRange(batch, keys, results, 0, batch.length);
+        if(batch.length <= SPLIT_THRESHOLD) {
+            decryption.compute();
+        } else {
+            pool.invoke(decryption);
+        }
+
+        return Collections.unmodifiableList(Arrays.asList(results));
+    }
+
+    private static Map<String, byte[]> resolveKeys(EncryptedMessage[] batch, SessionKeyResolver sessionKeys) {
+        final var keys = new HashMap<String, byte[]>();
+        final var missing = new HashSet<String>();
+        for(final var message : batch) {
+            final var keyIdentifier = message.getKeyIdentifier();
+            if(keyIdentifier == null || keys.containsKey(keyIdentifier) || missing.contains(keyIdentifier)) {
+                continue;
+            }
+
+            final var key = sessionKeys.resolve(keyIdentifier);
+            if(key.isPresent()) {
+                keys.put(keyIdentifier, key.get());
+            } else {
+                missing.add(keyIdentifier);
+            }
+        }
+        return keys;
+    }
+
+    private static class DecryptRange extends RecursiveAction {
+        private final EncryptedMessage[] batch;
+        private final Map<String, byte[]> keys;
+        private final Result<DecryptedPayload, DecryptionError>[] results;
+        private final int from;
+        private final int to;
+
+        DecryptRange(EncryptedMessage[] batch, Map<String, byte[]> keys, Result<DecryptedPayload, DecryptionError>[] results, int from, int to) {
+            this.batch = batch;
+            this.keys = keys;
+            this.results = results;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if(to - from <= SPLIT_THRESHOLD) {
+                for(int i = from; i < to; i++) {
+                    try {
+                        results[i] = decrypt(batch[i]);
+                    } catch(RuntimeException e) {
+                        // E.g. a message without an IV or data. One bad message mustn't fail the whole batch.
+                        results[i] = new Result<>(DecryptionError.INVALID_DATA);
+                    }
+                }
+                return;
+            }
+
+            final int middle = (from + to) >>> 1;
+            invokeAll(new DecryptRange(batch, keys, results, from, middle), new DecryptRange(batch, keys, results, middle, to));
+        }
+
+        private Result<DecryptedPayload, DecryptionError> decrypt(EncryptedMessage message) {
+            if(message.isEmpty()) {
+                return message.decrypt(null);
+            }
+
+            final var key = message.getKeyIdentifier() == null ? null : keys.get(message.getKeyIdentifier());
+            if(key == null) {
+                return new Result<>(DecryptionError.MISSING_SESSION_KEY);
+            }
+            return message.decrypt(key);
+        }
+    }
+
+    private static class WorkerThreadFactory implements ForkJoinPool.ForkJoinWorkerThreadFactory {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public ForkJoinWorkerThread newThread(ForkJoinPool pool) {
+            final var thread = new ForkJoinWorkerThread(pool) {};
+            thread.setName("1Password-batch-decrypt-" + count.incrementAndGet());
+            thread.setDaemon(true); // Never keep Burp alive on exit
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,266 @@
+package com.onepassword.burpanalyzer.processing;
+
+import javax.crypto.BadPaddingException;
+import javax.crypto.Cipher;
+import javax.crypto.IllegalBlockSizeException;
+import javax.crypto.NoSuchPaddingException;
+import javax.crypto.SecretKey;
+import javax.crypto.ShortBufferException;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.InvalidAlgorithmParameterException;
+import java.security.InvalidKeyException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class CryptoEngine {
+    private static final CryptoEngine instance = new CryptoEngine();
+
+    public static CryptoEngine getInstance() {
+        return instance;
+    }
+
+    private CryptoEngine() {}
+
+    private static final String TRANSFORMATION = "AES/GCM/NoPadding";
+    private static final String CTR_TRANSFORMATION = "AES/CTR/NoPadding";
+    private static final int TAG_LENGTH_BITS = 128;
+    private static final int TAG_LENGTH_BYTES = TAG_LENGTH_BITS / 8;
+    private static final int GCM_STANDARD_IV_LENGTH = 12;
+    private static final int STREAM_CHUNK_BYTES = 64 * 1024;
+
+    // Session keys rarely change, so this stays tiny. The bound only protects against someone typing keys all day.
+    private static final int MAX_CACHED_KEYS = 64;
+
+    private final Map<KeyBytes, SecretKey> keys = new ConcurrentHashMap<>();
+
+    // Cipher instances are not thread safe, so every thread gets its own
+    private final ThreadLocal<Cipher> decryptCipher = new ThreadLocal<>();
+    private final ThreadLocal<EncryptState> encryptState = new ThreadLocal<>();
+
+    public Result<byte[], DecryptionError> decrypt(byte[] sessionKey, byte[] iv, byte[] ciphertext) {
+        final Cipher aesGcm;
+        try {
+            aesGcm = decryptCipher();
+        } catch (NoSuchAlgorithmException | NoSuchPaddingException e) {
+            return new Result<>(DecryptionError.INVALID_JVM_SETUP);
+        }
+
+        try {
+            aesGcm.init(Cipher.DECRYPT_MODE, secretKey(sessionKey), new GCMParameterSpec(TAG_LENGTH_BITS, iv));
+        } catch (IllegalArgumentException | InvalidKeyException | InvalidAlgorithmParameterException e) {
+            return new Result<>(DecryptionError.INVALID_SESSION_KEY);
+        }
+
+        try {
+            return new Result<>(aesGcm.doFinal(ciphertext));
+        } catch (IllegalBlockSizeException | BadPaddingException e) {
+            return new Result<>(DecryptionError.INVALID_SESSION_KEY);
+        }
+    }
+
+    // Decrypts ciphertext (with the GCM tag at its end) into plaintext, holding no more than a few chunks in memory.
+    //
+    // The JCE's GCM decryption buffers all ciphertext until doFinal, so feeding it chunks wouldn't bound anything.
+    // Instead, the data is decrypted as AES-CTR starting from the counter GCM uses for the first block, and the tag
+    // is recomputed by GCM-encrypting the plaintext again, which authenticates exactly the same ciphertext.
+    //
+    // Plaintext reaches the sink before the tag has been checked. On any error, whatever was written must be discarded.
+    // Returns the number of plaintext bytes written.
+    public Result<Long, DecryptionError> decrypt(byte[] sessionKey, byte[] iv, InputStream ciphertext, OutputStream plaintext) {
+        if(iv == null || iv.length != GCM_STANDARD_IV_LENGTH) {
+            return decryptInMemory(sessionKey, iv, ciphertext, plaintext); // Other IV lengths derive the counter through GHASH
+        }
+
+        final Cipher ctr;
+        final Cipher tagCipher;
+        try {
+            final var key = secretKey(sessionKey);
+            ctr = Cipher.getInstance(CTR_TRANSFORMATION);
+            ctr.init(Cipher.DECRYPT_MODE, key, new IvParameterSpec(firstDataCounter(iv)));
+            tagCipher = Cipher.getInstance(TRANSFORMATION);
+            tagCipher.init(Cipher.ENCRYPT_MODE, key, new GCMParameterSpec(TAG_LENGTH_BITS, iv));
+        } catch (NoSuchAlgorithmException | NoSuchPaddingException e) {
+            return new Result<>(DecryptionError.INVALID_JVM_SETUP);
+        } catch (IllegalArgumentException | InvalidKeyException | InvalidAlgorithmParameterException e) {
+            return new Result<>(DecryptionError.INVALID_SESSION_KEY);
+        }
+
+        // The last TAG_LENGTH_BYTES read so far could be the tag, so they are always held back
+        final var input = new byte[STREAM_CHUNK_BYTES + TAG_LENGTH_BYTES];
+        final var output = new byte[STREAM_CHUNK_BYTES];
+        final var reencrypted = new byte[STREAM_CHUNK_BYTES + TAG_LENGTH_BYTES]; // Only written to, for the tag
+        int held = 0;
+        long written = 0;
+
+        while(true) {
+            final int read;
+            try {
+                read = ciphertext.read(input, held, input.length - held);
+            } catch (IOException e) {
+                return new Result<>(DecryptionError.INVALID_DATA);
+            }
+            if(read < 0) {
+                break;
+            }
+
+            held += read;
+            if(held <= TAG_LENGTH_BYTES) {
+                continue;
+            }
+
+            final int length = held - TAG_LENGTH_BYTES;
+            try {
+                final int decrypted = ctr.update(input, 0, length, output, 0);
+                tagCipher.update(output, 0, decrypted, reencrypted, 0);
+                plaintext.write(output, 0, decrypted);
+                written += decrypted;
+            } catch (ShortBufferException e) {
+                return new Result<>(DecryptionError.INVALID_JVM_SETUP);
+            } catch (IOException e) {
+                return new Result<>(DecryptionError.OUTPUT_FAILURE);
+            }
+
+            System.arraycopy(input, length, input, 0, TAG_LENGTH_BYTES);
+            held = TAG_LENGTH_BYTES;
+        }
+
+        if(held < TAG_LENGTH_BYTES) {
+            return new Result<>(DecryptionError.INVALID_SESSION_KEY); // Too short to even hold a tag
+        }
+
+        final byte[] encryptedTail;
+        try {
+            encryptedTail = tagCipher.doFinal();
+        } catch (IllegalBlockSizeException | BadPaddingException e) {
+            return new Result<>(DecryptionError.INVALID_JVM_SETUP);
+        }
+
+        // doFinal returns any ciphertext it still held, followed by the tag
+        final var expectedTag = Arrays.copyOfRange(encryptedTail, encryptedTail.length - TAG_LENGTH_BYTES, encryptedTail.length);
+        final var actualTag = Arrays.copyOf(input, TAG_LENGTH_BYTES);
+        if(!MessageDigest.isEqual(expectedTag, actualTag)) {
+            return new Result<>(DecryptionError.INVALID_SESSION_KEY);
+        }
+
+        return new Result<>(written);
+    }
+
+    private Result<Long, DecryptionError> decryptInMemory(byte[] sessionKey, byte[] iv, InputStream ciphertext, OutputStream plaintext) {
+        final byte[] input;
+        try {
+            input = ciphertext.readAllBytes();
+        } catch (IOException e) {
+            return new Result<>(DecryptionError.INVALID_DATA);
+        }
+
+        final var decrypted = decrypt(sessionKey, iv, input);
+        if(!decrypted.isOk()) {
+            return new Result<>(decrypted.getError());
+        }
+
+        try {
+            plaintext.write(decrypted.getResult());
+        } catch (IOException e) {
+            return new Result<>(DecryptionError.OUTPUT_FAILURE);
+        }
+        return new Result<>((long) decrypted.getResult().length);
+    }
+
+    // GCM encrypts the first block of data with counter IV || 2, as IV || 1 is reserved for the tag
+    private static byte[] firstDataCounter(byte[] iv) {
+        final var counter = Arrays.copyOf(iv, 16);
+        counter[15] = 2;
+        return counter;
+    }
+
+    public Result<byte[], EncryptionError> encrypt(byte[] sessionKey, byte[] iv, byte[] plaintext) {
+        final SecretKey key;
+        try {
+            key = secretKey(sessionKey);
+        } catch (IllegalArgumentException e) {
+            return new Result<>(EncryptionError.INVALID_SESSION_KEY);
+        }
+
+        final EncryptState state;
+        try {
+            state = encryptState(key, iv);
+        } catch (NoSuchAlgorithmException | NoSuchPaddingException e) {
+            return new Result<>(EncryptionError.INVALID_JVM_SETUP);
+        }
+
+        try {
+            state.cipher.init(Cipher.ENCRYPT_MODE, key, new GCMParameterSpec(TAG_LENGTH_BITS, iv));
+        } catch (InvalidKeyException e) {
+            return new Result<>(EncryptionError.INVALID_SESSION_KEY);
+        } catch (InvalidAlgorithmParameterException e) {
+            return new Result<>(EncryptionError.INVALID_JVM_SETUP);
+        }
+        state.lastKey = key;
+        state.lastIv = iv.clone();
+
+        try {
+            return new Result<>(state.cipher.doFinal(plaintext));
+        } catch (IllegalBlockSizeException | BadPaddingException e) {
+            return new Result<>(EncryptionError.INVALID_SESSION_KEY);
+        }
+    }
+
+    private SecretKey secretKey(byte[] sessionKey) {
+        final var cacheKey = new KeyBytes(sessionKey);
+        final var cached = keys.get(cacheKey);
+        if(cached != null) {
+            return cached;
+        }
+
+        if(keys.size() >= MAX_CACHED_KEYS) {
+            keys.clear();
+        }
+
+        final var key = new SecretKeySpec(sessionKey, 0, sessionKey.length, "AES");
+        keys.put(cacheKey.copy(), key);
+        return key;
+    }
+
+    private Cipher decryptCipher() throws NoSuchAlgorithmException, NoSuchPaddingException {
+        var cipher = decryptCipher.get();
+        if(cipher == null) {
+            cipher = Cipher.getInstance(TRANSFORMATION);
+            decryptCipher.set(cipher);
+        }
+        return cipher;
+    }
+
+    private EncryptState encryptState(SecretKey key, byte[] iv) throws NoSuchAlgorithmException, NoSuchPaddingException {
+        var state = encryptState.get();
+
+        // The JCE refuses to re-initialise a GCM cipher for encryption with the key and IV it used last time.
+        // This plugin deliberately re-encrypts under the message's original IV, so swap in a fresh cipher then.
+        if(state == null || state.wasLastUsedWith(key, iv)) {
+            state = new EncryptState(Cipher.getInstance(TRANSFORMATION));
+            encryptState.set(state);
+        }
+        return state;
+    }
+
+    private static class EncryptState {
+        private final Cipher cipher;
+        private SecretKey lastKey;
+        private byte[] lastIv;
+
+        EncryptState(Cipher cipher) {
+            this.cipher = cipher;
+        }
+
+        boolean wasLastUsedWith(SecretKey key, byte[] iv) {
+            return key.equals(lastKey) && Arrays.equals(iv, lastIv);
+        }
+    }
+}
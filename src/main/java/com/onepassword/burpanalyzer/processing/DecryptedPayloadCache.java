@@ -0,0 +1,212 @@
+package com.onepassword.burpanalyzer.processing;
+
+import com.onepassword.burpanalyzer.model.EncryptedMessage;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.LongAdder;
+
+// Decrypted and formatted payloads, shared by all editor tabs, so going back to a message in the proxy history
+// doesn't decrypt and pretty print it all over again. Bounded by the memory its text takes up,
+// dropping the least recently shown payloads first.
+public class DecryptedPayloadCache {
+    public static final long DEFAULT_MAX_BYTES = 64L * 1024 * 1024;
+
+    // Can be tuned when starting Burp, e.g. -Donepassword.payloads.cacheMegabytes=256
+    private static final DecryptedPayloadCache instance = new DecryptedPayloadCache(
+        Long.getLong("onepassword.payloads.cacheMegabytes", DEFAULT_MAX_BYTES / (1024 * 1024)) * 1024 * 1024
+    );
+
+    public static DecryptedPayloadCache getInstance() {
+        return instance;
+    }
+
+    // Rough cost of an entry besides its text: the key, the map entry and two String headers
+    private static final int ENTRY_OVERHEAD_BYTES = 256;
+
+    private final long maxBytes;
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long bytes = 0;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public DecryptedPayloadCache(long maxBytes) {
+        if(maxBytes < 1) {
+            throw new IllegalArgumentException("Payload cache size must be positive");
+        }
+        this.maxBytes = maxBytes;
+    }
+
+    public Optional<Entry> find(Key key) {
+        final Entry entry;
+        synchronized(entries) {
+            entry = entries.get(key);
+        }
+
+        if(entry == null) {
+            misses.increment();
+        } else {
+            hits.increment();
+        }
+        return Optional.ofNullable(entry);
+    }
+
+    // Only successful decryptions belong here, errors depend on more than the message
+    public void put(Key key, Entry entry) {
+        final long size = entry.size();
+        if(size > maxBytes) {
+            return; // Would evict everything else and still not fit
+        }
+
+        synchronized(entries) {
+            final var previous = entries.put(key, entry);
+            if(previous != null) {
+                bytes -= previous.size();
+            }
+            bytes += size;
+
+            final Iterator<Map.Entry<Key, Entry>> eldest = entries.entrySet().iterator();
+            while(bytes > maxBytes && eldest.hasNext()) {
+                final var evicted = eldest.next();
+                if(evicted.getKey().equals(key)) {
+                    continue;
+                }
+                eldest.remove();
+                bytes -= evicted.getValue().size();
+                evictions.increment();
+            }
+        }
+    }
+
+    public void clear() {
+        synchronized(entries) {
+            entries.clear();
+            bytes = 0;
+        }
+    }
+
+    public Statistics getStatistics() {
+        final int count;
+        final long size;
+        synchronized(entries) {
+            count = entries.size();
+            size = bytes;
+        }
+        return new Statistics(count, size, hits.sum(), misses.sum(), evictions.sum());
+    }
+
+    public static class Entry {
+        private final String text;
+        private final String displayText;
+
+        public Entry(String text, String displayText) {
+            this.text = text;
+            this.displayText = displayText;
+        }
+
+        public String getText() { return text; }
+        public String getDisplayText() { return displayText; }
+
+        long size() {
+            // Formatting often leaves the text as it is, and then it's only held once
+            final long chars = text.length() + (displayText == text ? 0 : displayText.length());
+            return chars * Character.BYTES + ENTRY_OVERHEAD_BYTES;
+        }
+    }
+
+    // Identifies a payload by its key id, IV and a digest of its ciphertext. A digest of the session key is part of it too:
+    // the same ciphertext under a different key doesn't decrypt, so it must not be answered from the cache either.
+    public static class Key {
+        private final String keyIdentifier;
+        private final byte[] iv;
+        private final byte[] ciphertextDigest;
+        private final byte[] sessionKeyDigest;
+        private final int hash;
+
+        private Key(String keyIdentifier, byte[] iv, byte[] ciphertextDigest, byte[] sessionKeyDigest) {
+            this.keyIdentifier = keyIdentifier;
+            this.iv = iv;
+            this.ciphertextDigest = ciphertextDigest;
+            this.sessionKeyDigest = sessionKeyDigest;
+            this.hash = Arrays.hashCode(ciphertextDigest);
+        }
+
+        // Empty for messages that have nothing to decrypt or aren't valid
+        public static Optional<Key> of(EncryptedMessage message, byte[] sessionKey) {
+            if(message.isEmpty() || sessionKey == null) {
+                return Optional.empty();
+            }
+
+            final var ciphertextDigest = message.dataDigest();
+            if(ciphertextDigest == null) {
+                return Optional.empty();
+            }
+
+            final MessageDigest sha256;
+            try {
+                sha256 = MessageDigest.getInstance("SHA-256");
+            } catch(NoSuchAlgorithmException e) {
+                return Optional.empty();
+            }
+            sha256.update(sessionKey);
+
+            final var keyIdentifier = message.getKeyIdentifier() == null ? "" : message.getKeyIdentifier();
+            final var iv = message.getIv() == null ? new byte[0] : message.getIv().clone();
+            return Optional.of(new Key(keyIdentifier, iv, ciphertextDigest, sha256.digest()));
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if(this == o) return true;
+            if(o == null || getClass() != o.getClass()) return false;
+            final var that = (Key) o;
+            return keyIdentifier.equals(that.keyIdentifier) &&
+                    Arrays.equals(iv, that.iv) &&
+                    Arrays.equals(ciphertextDigest, that.ciphertextDigest) &&
+                    MessageDigest.isEqual(sessionKeyDigest, that.sessionKeyDigest);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    public static class Statistics {
+        private final int payloads;
+        private final long bytes;
+        private final long hits;
+        private final long misses;
+        private final long evictions;
+
+        private Statistics(int payloads, long bytes, long hits, long misses, long evictions) {
+            this.payloads = payloads;
+            this.bytes = bytes;
+            this.hits = hits;
+            this.misses = misses;
+            this.evictions = evictions;
+        }
+
+        public int getPayloads() { return payloads; }
+        public long getBytes() { return bytes; }
+        public long getHits() { return hits; }
+        public long getMisses() { return misses; }
+        public long getEvictions() { return evictions; }
+
+        @Override
+        public String toString() {
+            return "payloads=" + payloads +
+                    ", bytes=" + bytes +
+                    ", hits=" + hits +
+                    ", misses=" + misses +
+                    ", evictions=" + evictions;
+        }
+    }
+}
@@ -2,7 +2,11 @@ package com.onepassword.burpanalyzer.processing;
 
 public enum DecryptionError implements BaseError {
     INVALID_SESSION_KEY("Provided session key can't decrypt this message."),
-    INVALID_JVM_SETUP("There was a failure setting up expected Java cryptography modules.");
+    INVALID_JVM_SETUP("There was a failure setting up expected Java cryptography modules."),
+    INVALID_DATA("The encrypted data is not valid base64 URL."),
+    MISSING_FIELD("The encrypted message has no IV or no data."),
+    OUTPUT_FAILURE("Failed to write the decrypted message."),
+    MISSING_SESSION_KEY("No session key is known for this message's key identifier.");
 
     private final String readable;
     DecryptionError(String readable) { this.readable = readable; }
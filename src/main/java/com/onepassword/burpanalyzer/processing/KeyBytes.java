@@ -0,0 +1,31 @@
+package com.onepassword.burpanalyzer.processing;
+
+import java.util.Arrays;
+
+// byte[] uses identity equality, so wrap it to look up per-session-key state by content
+class KeyBytes {
+    private final byte[] bytes;
+    private final int hash;
+
+    // Does not copy, so lookups stay allocation free apart from the wrapper. Store a copy when caching.
+    KeyBytes(byte[] bytes) {
+        this.bytes = bytes;
+        this.hash = Arrays.hashCode(bytes);
+    }
+
+    KeyBytes copy() {
+        return new KeyBytes(bytes.clone());
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if(this == o) return true;
+        if(o == null || getClass() != o.getClass()) return false;
+        return Arrays.equals(bytes, ((KeyBytes) o).bytes);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+}
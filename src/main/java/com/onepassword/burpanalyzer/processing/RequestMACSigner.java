@@ -0,0 +1,233 @@
+package com.onepassword.burpanalyzer.processing;
+
+import com.onepassword.burpanalyzer.model.RequestMAC;
+
+import javax.crypto.Mac;
+import javax.crypto.ShortBufferException;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.InvalidKeyException;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Signs request MACs for one session key. The derived MAC key only depends on the session key,
+// so it is computed once here and every thread signs with its own initialised Mac.
+public class RequestMACSigner {
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final String DERIVATION_MESSAGE = "He never wears a Mac, in the pouring rain. Very strange.";
+
+    // Same reasoning as the key cache in CryptoEngine, there are only ever a handful of live session keys
+    private static final int MAX_CACHED_SIGNERS = 64;
+    private static final Map<KeyBytes, RequestMACSigner> signers = new ConcurrentHashMap<>();
+
+    private final Mac prototype;
+    private final ThreadLocal<Mac> mac;
+
+    private RequestMACSigner(Mac prototype) {
+        this.prototype = prototype;
+        this.mac = ThreadLocal.withInitial(this::copyPrototype);
+    }
+
+    public static Result<RequestMACSigner, RequestMACGenerateError> forSessionKey(byte[] sessionKey) {
+        final var cacheKey = new KeyBytes(sessionKey);
+        final var cached = signers.get(cacheKey);
+        if(cached != null) {
+            return new Result<>(cached);
+        }
+
+        final var signer = create(sessionKey);
+        if(signer.isOk()) {
+            if(signers.size() >= MAX_CACHED_SIGNERS) {
+                signers.clear();
+            }
+            signers.put(cacheKey.copy(), signer.getResult());
+        }
+        return signer;
+    }
+
+    private static Result<RequestMACSigner, RequestMACGenerateError> create(byte[] sessionKey) {
+        final Mac derivationMac;
+        final Mac requestMac;
+        try {
+            derivationMac = Mac.getInstance(ALGORITHM);
+            requestMac = Mac.getInstance(ALGORITHM);
+        } catch(NoSuchAlgorithmException e) {
+            return new Result<>(RequestMACGenerateError.INVALID_JVM_SETUP);
+        }
+
+        try {
+            derivationMac.init(new SecretKeySpec(sessionKey, ALGORITHM));
+        } catch (IllegalArgumentException | InvalidKeyException e) {
+            return new Result<>(RequestMACGenerateError.INVALID_SESSION_KEY);
+        }
+        final var sessionMACKey = derivationMac.doFinal(DERIVATION_MESSAGE.getBytes(StandardCharsets.US_ASCII));
+
+        try {
+            requestMac.init(new SecretKeySpec(sessionMACKey, ALGORITHM));
+        } catch (InvalidKeyException e) {
+            return new Result<>(RequestMACGenerateError.INVALID_DERIVATION_KEY);
+        }
+
+        return new Result<>(new RequestMACSigner(requestMac));
+    }
+
+    private Mac copyPrototype() {
+        try {
+            // Cloning skips the provider lookup and key schedule of a fresh Mac
+            synchronized(prototype) {
+                return (Mac) prototype.clone();
+            }
+        } catch(CloneNotSupportedException e) {
+            throw new IllegalStateException("HMAC provider does not support cloning", e);
+        }
+    }
+
+    public Result<String, RequestMACGenerateError> sign(RequestMAC requestMAC) {
+        final Mac hmac;
+        try {
+            hmac = mac.get();
+        } catch(IllegalStateException e) {
+            return new Result<>(RequestMACGenerateError.INVALID_JVM_SETUP);
+        }
+
+        // authString := sessionId|METHOD|host/uriPath?queryString|version|requestId
+        final var buffers = SigningBuffers.get();
+        final var auth = buffers.auth.reset();
+        auth.appendUtf8(requestMAC.getSessionId()).append('|');
+        auth.appendUtf8(requestMAC.getRequestMethod().name()).append('|');
+        auth.appendUtf8(requestMAC.getHost()).append('/');
+        auth.appendUtf8(requestMAC.getUriPath()).append('?');
+        auth.appendUtf8(requestMAC.getQueryString()).append('|');
+        auth.appendUtf8(requestMAC.getVersionIndicator().versionStr).append('|');
+        auth.appendDecimal(requestMAC.getRequestId());
+
+        hmac.update(auth.bytes, 0, auth.length);
+        try {
+            hmac.doFinal(buffers.mac, 0);
+        } catch(ShortBufferException e) {
+            return new Result<>(RequestMACGenerateError.INVALID_JVM_SETUP);
+        }
+
+        // headerValue := version|requestId|base64url(mac[0:12])
+        // The version and request id are already in the auth string buffer, so they are copied from there.
+        final var header = buffers.header;
+        final int versionAndIdStart = auth.length - requestMAC.getVersionIndicator().versionStr.length() - 1 - auth.lastDecimalLength;
+        int headerLength = 0;
+        for(int i = versionAndIdStart; i < auth.length; i++) {
+            header[headerLength++] = (char) auth.bytes[i];
+        }
+        header[headerLength++] = '|';
+        headerLength = encodeTruncatedMac(buffers.mac, header, headerLength);
+
+        return new Result<>(new String(header, 0, headerLength));
+    }
+
+    private static final int TRUNCATED_MAC_LENGTH = 12;
+    private static final char[] BASE64_URL_ALPHABET = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_".toCharArray();
+
+    // 12 bytes are exactly four 3 byte groups, so there is never any padding to deal with
+    private static int encodeTruncatedMac(byte[] mac, char[] out, int offset) {
+        for(int i = 0; i < TRUNCATED_MAC_LENGTH; i += 3) {
+            final int group = (mac[i] & 0xFF) << 16 | (mac[i + 1] & 0xFF) << 8 | (mac[i + 2] & 0xFF);
+            out[offset++] = BASE64_URL_ALPHABET[(group >>> 18) & 63];
+            out[offset++] = BASE64_URL_ALPHABET[(group >>> 12) & 63];
+            out[offset++] = BASE64_URL_ALPHABET[(group >>> 6) & 63];
+            out[offset++] = BASE64_URL_ALPHABET[group & 63];
+        }
+        return offset;
+    }
+
+    // Scratch space reused by every signature on a thread, so signing does not produce garbage
+    private static class SigningBuffers {
+        private static final ThreadLocal<SigningBuffers> buffers = ThreadLocal.withInitial(SigningBuffers::new);
+
+        static SigningBuffers get() {
+            return buffers.get();
+        }
+
+        private final ByteString auth = new ByteString();
+        private final byte[] mac = new byte[32]; // HMAC-SHA256 output size
+        // "v" + version, request id of at most 20 digits, base64 MAC and separators
+        private final char[] header = new char[64];
+    }
+
+    // Minimal growable UTF-8 byte buffer
+    private static class ByteString {
+        private byte[] bytes = new byte[256];
+        private int length;
+        private int lastDecimalLength;
+
+        ByteString reset() {
+            length = 0;
+            return this;
+        }
+
+        private void ensureCapacity(int additional) {
+            if(length + additional > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, length + additional));
+            }
+        }
+
+        ByteString append(char asciiChar) {
+            ensureCapacity(1);
+            bytes[length++] = (byte) asciiChar;
+            return this;
+        }
+
+        // Same output as String.getBytes(UTF_8), including '?' for unpaired surrogates
+        ByteString appendUtf8(String str) {
+            final int strLength = str.length();
+            ensureCapacity(strLength * 3);
+
+            for(int i = 0; i < strLength; i++) {
+                final char c = str.charAt(i);
+                if(c < 0x80) {
+                    bytes[length++] = (byte) c;
+                } else if(c < 0x800) {
+                    bytes[length++] = (byte) (0xC0 | (c >> 6));
+                    bytes[length++] = (byte) (0x80 | (c & 0x3F));
+                } else if(Character.isHighSurrogate(c) && i + 1 < strLength && Character.isLowSurrogate(str.charAt(i + 1))) {
+                    final int codePoint = Character.toCodePoint(c, str.charAt(++i));
+                    bytes[length++] = (byte) (0xF0 | (codePoint >> 18));
+                    bytes[length++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                    bytes[length++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                    bytes[length++] = (byte) (0x80 | (codePoint & 0x3F));
+                } else if(Character.isSurrogate(c)) {
+                    bytes[length++] = '?';
+                } else {
+                    bytes[length++] = (byte) (0xE0 | (c >> 12));
+                    bytes[length++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                    bytes[length++] = (byte) (0x80 | (c & 0x3F));
+                }
+            }
+            return this;
+        }
+
+        // Same digits as String.valueOf(long)
+        ByteString appendDecimal(long value) {
+            ensureCapacity(20);
+            final int start = length;
+
+            if(value < 0) {
+                bytes[length++] = '-';
+            }
+            final int digitsStart = length;
+            do {
+                bytes[length++] = (byte) ('0' + Math.abs(value % 10));
+                value /= 10;
+            } while(value != 0);
+
+            // Digits were written least significant first
+            for(int left = digitsStart, right = length - 1; left < right; left++, right--) {
+                final byte tmp = bytes[left];
+                bytes[left] = bytes[right];
+                bytes[right] = tmp;
+            }
+
+            lastDecimalLength = length - start;
+            return this;
+        }
+    }
+}
@@ -0,0 +1,210 @@
+package com.onepassword.burpanalyzer.ui;
+
+import com.onepassword.burpanalyzer.util.CoalescingExecutor;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.HierarchyEvent;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+// What Burp gets as the tab's component. Burp asks every message editor it creates for its components,
+// but most never show this tab, so the real OnePasswordSessionTabUI is only built once this is first shown.
+// Until then, whatever the tab asks the UI to show is kept, the latest value of each kind only, and handed on once it exists.
+final class LazySessionTabUI extends JPanel {
+    private final OnePasswordSessionTab main;
+    private final boolean editable;
+
+    private volatile OnePasswordSessionTabUI ui;
+
+    private final AtomicBoolean pendingRequestIdRemoval = new AtomicBoolean(false);
+    private final AtomicReference<String> pendingKeyId = new AtomicReference<>();
+    private final AtomicReference<Integer> pendingRequestId = new AtomicReference<>();
+    private final AtomicReference<byte[]> pendingSessionKey = new AtomicReference<>();
+    private final AtomicReference<PendingText> pendingHttpMessage = new AtomicReference<>();
+    private final AtomicReference<PendingText> pendingDecryptedPayload = new AtomicReference<>();
+    private final AtomicReference<Optional<String>> pendingError = new AtomicReference<>();
+
+    LazySessionTabUI(OnePasswordSessionTab main, boolean editable) {
+        super(new BorderLayout());
+        this.main = main;
+        this.editable = editable;
+
+        addHierarchyListener(e -> {
+            if((e.getChangeFlags() & HierarchyEvent.SHOWING_CHANGED) != 0 && isShowing()) {
+                build();
+            }
+        });
+    }
+
+    private void build() {
+        if(ui != null) {
+            return;
+        }
+
+        final var built = new OnePasswordSessionTabUI(main, editable);
+        add(built, BorderLayout.CENTER);
+        revalidate();
+        ui = built;
+        handOver(built);
+    }
+
+    // Session parameters are set on the EDT, while editor text and errors come from background workers.
+    // Either way the pending values are handed over on the EDT, in the order the eager UI would have seen them.
+    private void handOverIfBuilt() {
+        final var built = ui;
+        if(built == null) {
+            return;
+        }
+
+        if(SwingUtilities.isEventDispatchThread()) {
+            handOver(built);
+        } else {
+            SwingUtilities.invokeLater(() -> handOver(built));
+        }
+    }
+
+    private void handOver(OnePasswordSessionTabUI built) {
+        if(pendingRequestIdRemoval.getAndSet(false)) {
+            built.removeRequestIdInput();
+        }
+
+        final var keyId = pendingKeyId.getAndSet(null);
+        if(keyId != null) {
+            built.setKeyIdInput(keyId);
+        }
+
+        final var requestId = pendingRequestId.getAndSet(null);
+        if(requestId != null) {
+            built.setRequestIdInput(requestId);
+        }
+
+        final var sessionKey = pendingSessionKey.getAndSet(null);
+        if(sessionKey != null) {
+            built.setSessionKey(sessionKey);
+        }
+
+        final var httpMessage = pendingHttpMessage.getAndSet(null);
+        if(httpMessage != null) {
+            built.setProcessedHttpMessageText(httpMessage.text, httpMessage.generation);
+        }
+
+        final var decryptedPayload = pendingDecryptedPayload.getAndSet(null);
+        if(decryptedPayload != null) {
+            built.setFormattedDecryptedPayloadText(decryptedPayload.text, decryptedPayload.generation);
+        }
+
+        final var error = pendingError.getAndSet(null);
+        if(error != null) {
+            if(error.isPresent()) {
+                built.showError(error.get());
+            } else {
+                built.showNoErrors();
+            }
+        }
+    }
+
+    public void setKeyIdInput(String keyIdText) {
+        final var built = ui;
+        if(built != null) {
+            built.setKeyIdInput(keyIdText);
+            return;
+        }
+        pendingKeyId.set(keyIdText);
+        handOverIfBuilt();
+    }
+
+    public void setRequestIdInput(int requestId) {
+        final var built = ui;
+        if(built != null) {
+            built.setRequestIdInput(requestId);
+            return;
+        }
+        pendingRequestId.set(requestId);
+        handOverIfBuilt();
+    }
+
+    public void removeRequestIdInput() {
+        final var built = ui;
+        if(built != null) {
+            built.removeRequestIdInput();
+            return;
+        }
+        pendingRequestIdRemoval.set(true);
+        handOverIfBuilt();
+    }
+
+    public void setSessionKey(byte[] sessionKey) {
+        final var built = ui;
+        if(built != null) {
+            built.setSessionKey(sessionKey);
+            return;
+        }
+        pendingSessionKey.set(sessionKey);
+        handOverIfBuilt();
+    }
+
+    public void showError(final String error) {
+        final var built = ui;
+        if(built != null) {
+            built.showError(error);
+            return;
+        }
+        pendingError.set(Optional.of(error));
+        handOverIfBuilt();
+    }
+
+    public void showNoErrors() {
+        final var built = ui;
+        if(built != null) {
+            built.showNoErrors();
+            return;
+        }
+        pendingError.set(Optional.empty());
+        handOverIfBuilt();
+    }
+
+    public void setFormattedDecryptedPayloadText(final CharSequence newText, final CoalescingExecutor.Generation generation) {
+        final var built = ui;
+        if(built != null) {
+            built.setFormattedDecryptedPayloadText(newText, generation);
+            return;
+        }
+        pendingDecryptedPayload.set(new PendingText(newText, generation));
+        handOverIfBuilt();
+    }
+
+    public void setProcessedHttpMessageText(final CharSequence text, final CoalescingExecutor.Generation generation) {
+        final var built = ui;
+        if(built != null) {
+            built.setProcessedHttpMessageText(text, generation);
+            return;
+        }
+        pendingHttpMessage.set(new PendingText(text, generation));
+        handOverIfBuilt();
+    }
+
+    // A UI that doesn't exist yet has nothing paged
+    public void resetPaging() {
+        final var built = ui;
+        if(built != null) {
+            built.resetPaging();
+        }
+    }
+
+    public String getSelectedData() {
+        final var built = ui;
+        return built == null ? null : built.getSelectedData();
+    }
+
+    private static class PendingText {
+        private final CharSequence text;
+        private final CoalescingExecutor.Generation generation;
+
+        PendingText(CharSequence text, CoalescingExecutor.Generation generation) {
+            this.text = text;
+            this.generation = generation;
+        }
+    }
+}
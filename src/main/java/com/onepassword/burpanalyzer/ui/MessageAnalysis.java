@@ -0,0 +1,161 @@
+package com.onepassword.burpanalyzer.ui;
+
+import burp.IExtensionHelpers;
+import burp.IHttpService;
+import burp.IRequestInfo;
+import com.onepassword.burpanalyzer.model.EncryptedMessage;
+import com.onepassword.burpanalyzer.model.EncryptedMessageReader;
+import com.onepassword.burpanalyzer.processing.EncryptedMessageProcessingError;
+import com.onepassword.burpanalyzer.processing.Result;
+import com.onepassword.burpanalyzer.util.HeaderIndex;
+import com.onepassword.burpanalyzer.util.JsonSupport;
+import com.onepassword.burpanalyzer.util.RequestMACParser;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+// Everything the session tab wants to know about one HTTP message. Burp's analysis happens once when this
+// is created, the request MAC and encrypted body are only parsed when first asked for.
+final class MessageAnalysis {
+
+    private final byte[] message;
+    private final String text; // The text this was created from, if any
+    private final boolean isRequest;
+    private final IHttpService httpService;
+
+    private final IRequestInfo requestInfo; // Only for requests
+    private final List<String> headers;
+    private final HeaderIndex headerIndex;
+    private final int bodyOffset;
+
+    // Computed on first use. Racing threads may both compute them, which is harmless as the results are equal.
+    private volatile RequestMACParser.Result requestMac;
+    private volatile Result<EncryptedMessage, EncryptedMessageProcessingError> encryptedMessage;
+
+    private MessageAnalysis(IExtensionHelpers helpers, byte[] message, String text, boolean isRequest, IHttpService httpService) {
+        this.message = message;
+        this.text = text;
+        this.isRequest = isRequest;
+        this.httpService = httpService;
+
+        if(isRequest) {
+            this.requestInfo = httpService != null ? helpers.analyzeRequest(httpService, message) : helpers.analyzeRequest(message);
+            this.headers = requestInfo.getHeaders();
+            this.bodyOffset = requestInfo.getBodyOffset();
+        } else {
+            final var responseInfo = helpers.analyzeResponse(message);
+            this.requestInfo = null;
+            this.headers = responseInfo.getHeaders();
+            this.bodyOffset = responseInfo.getBodyOffset();
+        }
+        this.headerIndex = HeaderIndex.of(headers);
+    }
+
+    static MessageAnalysis of(IExtensionHelpers helpers, byte[] message, boolean isRequest, IHttpService httpService) {
+        return new MessageAnalysis(helpers, message, null, isRequest, httpService);
+    }
+
+    // For messages the tab holds as text, message being the text's bytes
+    static MessageAnalysis of(IExtensionHelpers helpers, String text, byte[] message, boolean isRequest, IHttpService httpService) {
+        return new MessageAnalysis(helpers, message, text, isRequest, httpService);
+    }
+
+    // Keeps the most recently analysed message. UI events tend to ask about the same message over and over.
+    static final class Cache {
+        private final IExtensionHelpers helpers;
+        private final AtomicReference<MessageAnalysis> last = new AtomicReference<>();
+
+        Cache(IExtensionHelpers helpers) {
+            this.helpers = helpers;
+        }
+
+        MessageAnalysis analyze(byte[] message, boolean isRequest, IHttpService httpService) {
+            final var cached = last.get();
+            if(cached != null && cached.isFor(message, isRequest, httpService)) {
+                return cached;
+            }
+
+            final var analysis = MessageAnalysis.of(helpers, message, isRequest, httpService);
+            last.set(analysis);
+            return analysis;
+        }
+
+        MessageAnalysis analyze(String text, boolean isRequest, IHttpService httpService) {
+            final var cached = last.get();
+            if(cached != null && cached.isFor(text, isRequest, httpService)) {
+                return cached;
+            }
+
+            final var analysis = MessageAnalysis.of(helpers, text, helpers.stringToBytes(text), isRequest, httpService);
+            last.set(analysis);
+            return analysis;
+        }
+    }
+
+    // Whether this analysis can answer for the given message. Burp tends to hand us the same array repeatedly.
+    boolean isFor(byte[] message, boolean isRequest, IHttpService httpService) {
+        return this.isRequest == isRequest && this.httpService == httpService &&
+                (this.message == message || Arrays.equals(this.message, message));
+    }
+
+    // Cheaper than isFor(byte[]...) as the text doesn't have to be converted to bytes first
+    boolean isFor(String text, boolean isRequest, IHttpService httpService) {
+        return this.isRequest == isRequest && this.httpService == httpService && this.text != null && this.text.equals(text);
+    }
+
+    byte[] getMessage() {
+        return message;
+    }
+
+    List<String> getHeaders() {
+        return headers;
+    }
+
+    HeaderIndex getHeaderIndex() {
+        return headerIndex;
+    }
+
+    int getBodyOffset() {
+        return bodyOffset;
+    }
+
+    boolean isBodyBlank() {
+        for(int i = bodyOffset; i < message.length; i++) {
+            if(!Character.isWhitespace((char) (message[i] & 0xff))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    RequestMACParser.Result getRequestMac() {
+        if(!isRequest) {
+            throw new IllegalStateException("Only requests carry a request MAC");
+        }
+
+        var result = requestMac;
+        if(result == null) {
+            result = RequestMACParser.parseRequestMac(requestInfo, headerIndex);
+            requestMac = result;
+        }
+        return result;
+    }
+
+    Result<EncryptedMessage, EncryptedMessageProcessingError> getEncryptedMessage() {
+        var result = encryptedMessage;
+        if(result == null) {
+            result = parseEncryptedMessage();
+            encryptedMessage = result;
+        }
+        return result;
+    }
+
+    private Result<EncryptedMessage, EncryptedMessageProcessingError> parseEncryptedMessage() {
+        if(isBodyBlank()) {
+            return new Result<>(EncryptedMessageProcessingError.EMPTY);
+        }
+
+        return EncryptedMessageReader.read(JsonSupport.factory(), message, bodyOffset, message.length - bodyOffset);
+    }
+}
@@ -2,21 +2,30 @@ package com.onepassword.burpanalyzer.ui;
 
 import burp.*;
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.onepassword.burpanalyzer.model.DecryptedPayload;
 import com.onepassword.burpanalyzer.model.EncryptedMessage;
 import com.onepassword.burpanalyzer.model.RequestMAC;
+import com.onepassword.burpanalyzer.processing.DecryptedPayloadCache;
+import com.onepassword.burpanalyzer.processing.DecryptionError;
 import com.onepassword.burpanalyzer.processing.EncryptedMessageProcessingError;
 import com.onepassword.burpanalyzer.processing.Result;
 import com.onepassword.burpanalyzer.processing.SessionKeyParsingError;
+import com.onepassword.burpanalyzer.util.CoalescingExecutor;
+import com.onepassword.burpanalyzer.util.HttpMessageSplicer;
+import com.onepassword.burpanalyzer.util.JsonFormatter;
+import com.onepassword.burpanalyzer.util.JsonSupport;
+import com.onepassword.burpanalyzer.util.MappedText;
 import com.onepassword.burpanalyzer.util.OnePasswordHeaders;
-import com.onepassword.burpanalyzer.util.RequestMACParser;
+import com.onepassword.burpanalyzer.util.RawHeaderFilter;
+import com.onepassword.burpanalyzer.util.RenderPolicy;
 import com.onepassword.burpanalyzer.util.SessionStateCache;
 
 import java.awt.*;
+import java.io.BufferedOutputStream;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.security.SecureRandom;
-import java.util.Arrays;
 import java.util.Base64;
 import java.util.Optional;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -28,13 +37,12 @@ public class OnePasswordSessionTab implements IMessageEditorTab {
     private final IExtensionHelpers helpers;
     private final IMessageEditorController controller;
 
-    private final OnePasswordSessionTabUI ui;
+    private final LazySessionTabUI ui;
     private final AtomicBoolean isModified;
 
     private IHttpService httpService;
     private final SessionStateCache sessionStateCache;
-
-    private final ObjectMapper mapper = new ObjectMapper();
+    private final DecryptedPayloadCache payloadCache;
 
     private final boolean editable;
     private boolean isRequest;
@@ -42,19 +50,39 @@ public class OnePasswordSessionTab implements IMessageEditorTab {
     private final AtomicReference<byte[]> sessionKey = new AtomicReference<>();
     private final AtomicReference<String> keyId = new AtomicReference<>();
     private final AtomicLong requestId = new AtomicLong();
-    private final AtomicReference<String> decryptedPayloadText = new AtomicReference<>();
+    private final AtomicReference<CharSequence> decryptedPayloadText = new AtomicReference<>();
     private final AtomicReference<String> httpMessageText = new AtomicReference<>();
 
+    // Background work per input, each only ever computing the latest pending update.
+    // They all write the same message, so the lanes share one group and the latest update of any kind wins.
+    private final CoalescingExecutor.LaneGroup updates;
+    private final CoalescingExecutor.Lane httpMessageUpdates;
+    private final CoalescingExecutor.Lane decryptedPayloadUpdates;
+    private final CoalescingExecutor.Lane keyIdUpdates;
+    private final CoalescingExecutor.Lane sessionKeyUpdates;
+    private final CoalescingExecutor.Lane requestIdUpdates;
+
+    private final MessageAnalysis.Cache analyses;
+
     public OnePasswordSessionTab(IExtensionHelpers helpers, IMessageEditorController controller,
                                  boolean editable, IBurpExtenderCallbacks unused) {
         this.helpers = helpers;
         this.controller = controller;
         this.editable = editable;
         this.sessionStateCache = SessionStateCache.getInstance();
+        this.payloadCache = DecryptedPayloadCache.getInstance();
+        this.analyses = new MessageAnalysis.Cache(helpers);
 
         this.isModified = new AtomicBoolean(false);
 
-        ui = new OnePasswordSessionTabUI(this, editable);
+        this.updates = CoalescingExecutor.getInstance().newLaneGroup();
+        this.httpMessageUpdates = updates.newLane();
+        this.decryptedPayloadUpdates = updates.newLane();
+        this.keyIdUpdates = updates.newLane();
+        this.sessionKeyUpdates = updates.newLane();
+        this.requestIdUpdates = updates.newLane();
+
+        ui = new LazySessionTabUI(this, editable);
     }
 
     @Override
@@ -73,12 +101,18 @@ public class OnePasswordSessionTab implements IMessageEditorTab {
             return false;
         }
 
+        // Burp asks this for every message it shows. Most aren't 1Password traffic, so rule those out
+        // on the raw bytes before paying for a full analysis.
         if(isRequest) {
-            final var request = helpers.analyzeRequest(getHttpService(content), content);
-            return OnePasswordHeaders.isOnePasswordRequest(request.getHeaders());
+            if(!RawHeaderFilter.mayBeOnePasswordRequest(content)) {
+                return false;
+            }
+            return analyze(content, true).getHeaderIndex().hasMacHeader();
         } else { // Responses don't have as clear markers, we're matching on the contents of the CSP
-            final var response = helpers.analyzeResponse(content);
-            return OnePasswordHeaders.isOnePasswordResponse(response.getHeaders());
+            if(!RawHeaderFilter.mayBeOnePasswordResponse(content)) {
+                return false;
+            }
+            return analyze(content, false).getHeaderIndex().hasOnePasswordCsp();
         }
     }
 
@@ -91,32 +125,36 @@ public class OnePasswordSessionTab implements IMessageEditorTab {
             httpService = controller.getHttpService();
         }
 
+        // Anything still queued or running was computed for the previous message
+        updates.invalidate();
+        ui.resetPaging();
+
         final var messageText = helpers.bytesToString(content);
         processHttpMessageUpdate(messageText);
 
         if(isRequest) {
-            final var headers = helpers.analyzeRequest(content).getHeaders();
+            httpService = getHttpService(content);
+            final var headers = analyze(content, true).getHeaderIndex();
 
             // Requests send a session ID which is equal to the keyID. Grab from the header and fill.
-            final var sessionId = OnePasswordHeaders.parseSessionIdFromHeaders(headers);
+            final var sessionId = headers.getSessionId();
 
             if(sessionId.isPresent()) {
                 this.keyId.set(sessionId.get());
                 ui.setKeyIdInput(sessionId.get());
             }
 
-            httpService = getHttpService(content);
-
             // Attempt to set the request id
             final Optional<Integer> requestId;
 
             if(editable && sessionId.isPresent()) {
-                // If this is editable (intercept or repeater), set the request id to be the latest seen plus one
+                // If this is editable (intercept or repeater), set the request id to be the latest seen plus one.
+                // Nothing is reserved here, Burp calls this again on every tab switch and the message may never be sent.
                 requestId = sessionStateCache.findLatestRequestId(sessionId.get())
                                 .map(reqId -> reqId + 1);
             } else {
                 // If not editable or no session id is present, try to find the request id in the request itself
-                requestId = OnePasswordHeaders.parseRequestIdFromHeaders(headers);
+                requestId = headers.getRequestId();
             }
 
             if(requestId.isPresent()) {
@@ -126,21 +164,48 @@ public class OnePasswordSessionTab implements IMessageEditorTab {
         } else { // On responses, attempt to set the KeyId by fetching it from the payload
             ui.removeRequestIdInput(); // There is no request id on responses
 
-            final var response = helpers.analyzeResponse(content);
-            final var responseBody = Arrays.copyOfRange(content, response.getBodyOffset(), content.length);
-
-            try {
-                final var em = mapper.readValue(responseBody, EncryptedMessage.class);
+            // If parsing fails, then the key id will simply be empty
+            analyze(content, false).getEncryptedMessage().checkResult().ifPresent(em -> {
                 this.keyId.set(em.getKeyIdentifier());
                 ui.setKeyIdInput(em.getKeyIdentifier());
-            } catch(IOException ignored) {
-                // If parsing fails, then the key id will simply be empty
-            }
+            });
         }
     }
 
-    private void updateDecryptedPayload(final byte[] sessionKey, final EncryptedMessage encrypted) {
+    private void updateDecryptedPayload(final byte[] sessionKey, final EncryptedMessage encrypted, final CoalescingExecutor.Generation generation) {
+        // Payloads too big to show other than paged are decrypted into a file and paged from there, so their plaintext
+        // never has to fit in the heap. They are shown as they are, as formatting them would need all of it at once.
+        if(encrypted.getPlaintextLength() > RenderPolicy.getInstance().getPlainMaxChars()) {
+            final var mapped = decryptToFile(sessionKey, encrypted);
+            if(generation.isStale()) {
+                return;
+            }
+
+            final CharSequence text = mapped.isOk() ? mapped.getResult() : mapped.getError().getReadableError();
+            ui.showNoErrors();
+            this.decryptedPayloadText.set(text);
+            ui.setFormattedDecryptedPayloadText(text, generation);
+            return;
+        }
+
+        // Messages that were shown before, in this tab or any other, skip decrypting and formatting
+        final var cacheKey = DecryptedPayloadCache.Key.of(encrypted, sessionKey);
+        final var cached = cacheKey.flatMap(payloadCache::find);
+        if(cached.isPresent()) {
+            if(generation.isStale()) {
+                return;
+            }
+
+            ui.showNoErrors();
+            this.decryptedPayloadText.set(cached.get().getText());
+            ui.setFormattedDecryptedPayloadText(cached.get().getDisplayText(), generation);
+            return;
+        }
+
         final var decrypted = encrypted.decrypt(sessionKey);
+        if(generation.isStale()) {
+            return;
+        }
 
         final var text = decrypted.checkResult().map( dm -> {
             final var body = dm.getBody();
@@ -151,33 +216,64 @@ public class OnePasswordSessionTab implements IMessageEditorTab {
             }
         }).orElseGet(() -> decrypted.getError().getReadableError());
 
+        final var displayText = JsonFormatter.prettyPrint(text);
+        if(decrypted.isOk() && cacheKey.isPresent()) {
+            payloadCache.put(cacheKey.get(), new DecryptedPayloadCache.Entry(text, displayText));
+        }
+        if(generation.isStale()) {
+            return;
+        }
+
         ui.showNoErrors();
         this.decryptedPayloadText.set(text);
-        ui.setProcessedDecryptedPayloadText(text);
+        ui.setFormattedDecryptedPayloadText(displayText, generation);
+    }
+
+    // The file is only readable by the current user, and only mapped once the whole payload was authenticated
+    private static Result<MappedText, DecryptionError> decryptToFile(final byte[] sessionKey, final EncryptedMessage encrypted) {
+        try {
+            final var file = Files.createTempFile("burp-1password-payload", ".txt");
+            try {
+                try(final var sink = new BufferedOutputStream(Files.newOutputStream(file))) {
+                    final var written = encrypted.decrypt(sessionKey, sink);
+                    if(!written.isOk()) {
+                        return new Result<>(written.getError());
+                    }
+                }
+                return new Result<>(MappedText.map(file));
+            } finally {
+                deleteTempFile(file);
+            }
+        } catch(IOException e) {
+            return new Result<>(DecryptionError.OUTPUT_FAILURE);
+        }
     }
 
-    private void updateRequestMac(final byte[] sessionKey, final RequestMAC requestMac, final byte[] httpMessage) {
+    private static void deleteTempFile(final Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch(IOException e) {
+            file.toFile().deleteOnExit(); // Windows doesn't delete files that are still mapped
+        }
+    }
+
+    private void updateRequestMac(final byte[] sessionKey, final RequestMAC requestMac, final MessageAnalysis httpMessage, final CoalescingExecutor.Generation generation) {
         final var requestMacStr = requestMac.generateRequestHeader(sessionKey);
 
+        if(generation.isStale()) {
+            return;
+        }
+
         if(requestMacStr.isOk()) {
-            final var requestMacNew = requestMacStr.getResult();
-            final var requestStr = helpers.bytesToString(httpMessage);
-
-            // Find request MAC positions in original text
-            // The request MAC begins after the X-AgileBits-MAC: header, including the space between those.
-            final int requestMacBegin = requestStr.toLowerCase().indexOf(OnePasswordHeaders.MAC_HEADER_NAME.toLowerCase()) +
-                                            OnePasswordHeaders.MAC_HEADER_NAME.length() + 2; // header is followed by ": "
-            // The request MAC ends when the carriage return character after that is encountered
-            final int requestMacEnd = requestMacBegin + requestStr.substring(requestMacBegin).indexOf('\r');
-
-            if(requestMacBegin < requestMacEnd) {
-                // Put the the new string together and update
-                final var updatedRequestStr = requestStr.substring(0, requestMacBegin)
-                        + requestMacNew
-                        + requestStr.substring(requestMacEnd);
+            // Swap the value of the X-AgileBits-MAC header in the raw request, leaving everything else as is
+            final var updatedRequest = HttpMessageSplicer.replaceHeaderValue(
+                    httpMessage.getMessage(), httpMessage.getBodyOffset(), OnePasswordHeaders.MAC_HEADER_NAME, requestMacStr.getResult());
+
+            if(updatedRequest.isPresent()) {
+                final var updatedRequestStr = helpers.bytesToString(updatedRequest.get());
 
                 this.httpMessageText.set(updatedRequestStr);
-                ui.setProcessedHttpMessageText(updatedRequestStr);
+                ui.setProcessedHttpMessageText(updatedRequestStr, generation);
                 ui.showNoErrors();
             } else {
                 ui.showError("Failed to find replace MAC in original body.");
@@ -187,36 +283,51 @@ public class OnePasswordSessionTab implements IMessageEditorTab {
         }
     }
 
-    private void updateEncrypted(final String keyIdentifier, final byte[] iv, final byte[] sessionKey, final DecryptedPayload decryptedPayload) {
-        final var origTextBytes = helpers.stringToBytes(this.httpMessageText.get());
+    // Shows the message as it is now along with its decrypted payload. Each update makes the work of every earlier one
+    // stale, whichever input it came from, so the last one to run has to leave both editors up to date.
+    private void showCurrentMessage(final byte[] sessionKey, final CoalescingExecutor.Generation generation) {
+        final var message = this.httpMessageText.get();
+        if(message == null || generation.isStale()) {
+            return;
+        }
 
-        if(origTextBytes.length > 0) { // This can be empty in case this function is fired when before the message has been set. In that case, don't perform updates.
-            final String newText;
+        ui.setProcessedHttpMessageText(message, generation);
+        // Assume parsing fails because of empty body
+        final var encryptedMessage = analyze(message, isRequest).getEncryptedMessage().checkResult().orElseGet(EncryptedMessage::empty);
+        updateDecryptedPayload(sessionKey, encryptedMessage, generation);
+    }
 
-            final int bodyOffset = isRequest ? helpers.analyzeRequest(origTextBytes).getBodyOffset() :
-                    helpers.analyzeResponse(origTextBytes).getBodyOffset();
+    private void updateEncrypted(final String keyIdentifier, final byte[] iv, final byte[] sessionKey, final DecryptedPayload decryptedPayload, final CoalescingExecutor.Generation generation) {
+        final var origText = this.httpMessageText.get();
 
-            byte[] headerBytes = Arrays.copyOfRange(origTextBytes, 0, bodyOffset);
+        if(origText != null && !origText.isEmpty()) { // This can be empty in case this function is fired when before the message has been set. In that case, don't perform updates.
+            final byte[] newBody;
 
             if(!helpers.bytesToString(decryptedPayload.getBody()).isBlank()) {
                 final var result = decryptedPayload.encrypt(keyIdentifier, iv, sessionKey);
-                final var text = result.checkResult().map(em -> {
+                newBody = result.checkResult().map(em -> {
                     try {
-                        return mapper.writeValueAsString(em);
+                        return JsonSupport.encryptedMessageWriter().writeValueAsBytes(em);
                     } catch (JsonProcessingException e) {
-                        return "Error writing message to JSON.";
+                        return helpers.stringToBytes("Error writing message to JSON.");
                     }
-                }).orElseGet(() -> result.getError().getReadableError());
-
-                newText = helpers.bytesToString(headerBytes) + text;
+                }).orElseGet(() -> helpers.stringToBytes(result.getError().getReadableError()));
             } else {
-                newText = helpers.bytesToString(headerBytes) + "\n";
+                newBody = new byte[]{'\n'};
             }
 
+            if(generation.isStale()) {
+                return;
+            }
+
+            // Put the new body behind the original headers, with Content-Length updated to match
+            final var analysis = analyze(origText, isRequest);
+            final var newText = helpers.bytesToString(HttpMessageSplicer.replaceBody(analysis.getMessage(), analysis.getBodyOffset(), newBody));
+
             isModified.set(true);
 
             this.httpMessageText.set(newText);
-            ui.setProcessedHttpMessageText(newText);
+            ui.setProcessedHttpMessageText(newText, generation);
             ui.showNoErrors();
         }
     }
@@ -227,9 +338,16 @@ public class OnePasswordSessionTab implements IMessageEditorTab {
         if(input.length() == 26) {
             final var sessionKey = Optional.ofNullable(this.sessionKey.get());
             if(sessionKey.isPresent()) {
-                new Thread(() -> {
-                    updateEncrypted(input, fetchIvOrGenerate(), sessionKey.get(), decryptedPayload());
-                }).start();
+                keyIdUpdates.submit(generation -> {
+                    // Only a body encrypted for another key id needs re-encrypting. Setting the key id of a newly shown
+                    // message lands here too, and must not put the payload of the previous message into it.
+                    final var current = fetchEncryptedMessage();
+                    if(current.isOk() && !input.equals(current.getResult().getKeyIdentifier())) {
+                        updateEncrypted(input, current.getResult().getIv(), sessionKey.get(), decryptedPayload(), generation);
+                    }
+
+                    showCurrentMessage(sessionKey.get(), generation);
+                });
             } else {
                 final var skFromCache = sessionStateCache.findSessionKey(input);
                 if(skFromCache.isPresent()) {
@@ -256,85 +374,78 @@ public class OnePasswordSessionTab implements IMessageEditorTab {
     }
 
     private DecryptedPayload decryptedPayload() {
-        return new DecryptedPayload(helpers.stringToBytes(this.decryptedPayloadText.get()));
+        // Copies a paged payload out of its file, which only happens when it's encrypted again
+        final var text = this.decryptedPayloadText.get();
+        return new DecryptedPayload(helpers.stringToBytes(text == null ? null : text.toString()));
     }
 
     private Result<EncryptedMessage, EncryptedMessageProcessingError> fetchEncryptedMessage() {
-        final var bodyText = helpers.bytesToString(getBodyBytes());
+        final var message = this.httpMessageText.get();
 
-        if(bodyText.isBlank()) {
+        if(message == null) {
             return new Result<>(EncryptedMessageProcessingError.EMPTY);
         }
 
-        try {
-            return new Result<>(mapper.readValue(bodyText, EncryptedMessage.class));
-        } catch (IOException e) {
-            return new Result<>(EncryptedMessageProcessingError.INVALID_BODY);
-        }
+        return analyze(message, isRequest).getEncryptedMessage();
     }
 
     private String fetchKeyId() {
         return this.keyId.get();
     }
 
-    private byte[] getBodyBytes() {
-        final var message = this.httpMessageText.get();
+    // Analyses a message at most once, no matter how many UI events ask about it
+    private MessageAnalysis analyze(byte[] message, boolean isRequest) {
+        return analyses.analyze(message, isRequest, isRequest ? getHttpService(message) : null);
+    }
 
-        if(message != null) {
-            final var messageBytes = helpers.stringToBytes(message);
-            final var bodyOffset = isRequest ? helpers.analyzeRequest(this.getHttpService(messageBytes), messageBytes).getBodyOffset() : helpers.analyzeResponse(messageBytes).getBodyOffset();
-            return Arrays.copyOfRange(messageBytes, bodyOffset, messageBytes.length);
-        } else {
-            return new byte[]{};
-        }
+    private MessageAnalysis analyze(String message, boolean isRequest) {
+        // The service is only unknown for the first request shown in the Repeater, otherwise the text needn't be converted here
+        final var service = !isRequest ? null : httpService != null ? httpService : getHttpService(helpers.stringToBytes(message));
+        return analyses.analyze(message, isRequest, service);
     }
 
     public void processHttpMessageUpdate(final String input) {
         final var sessionKey = Optional.ofNullable(this.sessionKey.get());
+        // Set right away, so updates submitted after this one work on the new message
+        httpMessageText.set(input);
 
-        new Thread(() -> {
-            httpMessageText.set(input);
-            ui.setProcessedHttpMessageText(input);
+        httpMessageUpdates.submit(generation -> {
+            if(generation.isStale()) {
+                return;
+            }
+
+            ui.setProcessedHttpMessageText(input, generation);
 
-            final var messageBytes = helpers.stringToBytes(input);
-            final byte[] body;
+            final var analysis = analyze(input, isRequest);
 
             if(isRequest) {
-                final var request = helpers.analyzeRequest(this.getHttpService(messageBytes), messageBytes);
-                final var requestMacParseRes = RequestMACParser.parseRequestMac(request);
+                final var requestMacParseRes = analysis.getRequestMac();
 
                 if(sessionKey.isPresent()) {
                     if(requestMacParseRes.didSucceed()) {
-                        updateRequestMac(sessionKey.get(), requestMacParseRes.getRequestMAC(), messageBytes);
+                        updateRequestMac(sessionKey.get(), requestMacParseRes.getRequestMAC(), analysis, generation);
                     } else {
                         ui.showError(requestMacParseRes.getParseFailure().getReadableError());
                     }
                 } else {
                     ui.showError("Can't update request MAC. No valid session key is available.");
                 }
+            }
 
-                final var bodyOffset = helpers.analyzeRequest(this.getHttpService(messageBytes), messageBytes).getBodyOffset();
-                body = Arrays.copyOfRange(messageBytes, bodyOffset, messageBytes.length);
-            } else {
-                final var bodyOffset = helpers.analyzeResponse(messageBytes).getBodyOffset();
-                body = Arrays.copyOfRange(messageBytes, bodyOffset, messageBytes.length);
+            if(generation.isStale()) {
+                return;
             }
 
             if(sessionKey.isPresent()) {
-                EncryptedMessage encryptedMessage;
+                // Assume parsing fails because of empty body
+                final var encryptedMessage = analysis.getEncryptedMessage().checkResult().orElseGet(EncryptedMessage::empty);
 
-                try {
-                    encryptedMessage = mapper.readValue(body, EncryptedMessage.class);
-                } catch (IOException e) {
-                    encryptedMessage = EncryptedMessage.empty(); // Assume parsing fails because of empty body
-                }
-
-                updateDecryptedPayload(sessionKey.get(), encryptedMessage);
-            } else if(!helpers.bytesToString(body).isBlank()) {
+                updateDecryptedPayload(sessionKey.get(), encryptedMessage, generation);
+            } else if(!analysis.isBodyBlank()) {
                 ui.showError("Can't decrypt body");
             }
 
-        }).start();
+        });
     }
 
     public void processSessionKeyUpdate(final String input) {
@@ -354,21 +465,20 @@ public class OnePasswordSessionTab implements IMessageEditorTab {
             this.sessionKey.set(sk);
 
             if(encryptedMessage.isOk()) {
-                final var messageBytes = helpers.stringToBytes(this.httpMessageText.get());
+                final var analysis = analyze(this.httpMessageText.get(), isRequest);
 
-                new Thread(() -> {
+                sessionKeyUpdates.submit(generation -> {
                     if(isRequest) {
-                        final var request = helpers.analyzeRequest(getHttpService(messageBytes), messageBytes);
-                        final var requestMacParseRes = RequestMACParser.parseRequestMac(request);
+                        final var requestMacParseRes = analysis.getRequestMac();
                         if(requestMacParseRes.didSucceed()) {
-                            updateRequestMac(sk, requestMacParseRes.getRequestMAC(), messageBytes);
+                            updateRequestMac(sk, requestMacParseRes.getRequestMAC(), analysis, generation);
                         } else {
                             ui.showError(requestMacParseRes.getParseFailure().getReadableError());
                         }
                     }
 
-                    updateDecryptedPayload(sk, encryptedMessage.getResult());
-                }).start();
+                    showCurrentMessage(sk, generation);
+                });
             } else if(encryptedMessage.getError().equals(EncryptedMessageProcessingError.EMPTY)) {
                 ui.showNoErrors(); // Don't show errors when we can't decrypt an empty message
             } else {
@@ -399,10 +509,10 @@ public class OnePasswordSessionTab implements IMessageEditorTab {
         final var iv = fetchIvOrGenerate();
 
         if(sessionKey.isPresent() && keyId.isPresent()) {
-            new Thread(() -> {
+            decryptedPayloadUpdates.submit(generation -> {
                 final var decryptedMessage = new DecryptedPayload(helpers.stringToBytes(input));
-                updateEncrypted(keyId.get(), iv, sessionKey.get(), decryptedMessage);
-            }).start();
+                updateEncrypted(keyId.get(), iv, sessionKey.get(), decryptedMessage, generation);
+            });
         } else {
             if(sessionKey.isEmpty()) { ui.showError("Can't create encrypted message. No session key available."); }
             if(keyId.isEmpty()) { ui.showError("Can't create encrypted message. No key id available."); }
@@ -417,11 +527,9 @@ public class OnePasswordSessionTab implements IMessageEditorTab {
         if(isRequest && sessionKey.isPresent()) {
             this.requestId.set(newRequestId);
 
-            new Thread(() -> {
-                final var messageBytes = helpers.stringToBytes(httpMessage);
-                final var currentRequest = helpers.analyzeRequest(getHttpService(messageBytes), messageBytes);
-
-                final var currentRequestMacRes = RequestMACParser.parseRequestMac(currentRequest);
+            requestIdUpdates.submit(generation -> {
+                final var analysis = analyze(httpMessage, true);
+                final var currentRequestMacRes = analysis.getRequestMac();
 
                 if(currentRequestMacRes.didSucceed()) {
                     final var currentMac = currentRequestMacRes.getRequestMAC();
@@ -435,9 +543,11 @@ public class OnePasswordSessionTab implements IMessageEditorTab {
                             currentMac.getQueryString()
                     );
 
-                    updateRequestMac(sessionKey.get(), newMac, messageBytes);
+                    updateRequestMac(sessionKey.get(), newMac, analysis, generation);
                 }
-            }).start();
+
+                showCurrentMessage(sessionKey.get(), generation);
+            });
         } else {
             ui.showError("Can't apply new request ID without session key.");
         }
@@ -1,7 +1,8 @@
 package com.onepassword.burpanalyzer.ui;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.onepassword.burpanalyzer.util.CoalescingExecutor;
+import com.onepassword.burpanalyzer.util.DocumentPatch;
+import com.onepassword.burpanalyzer.util.RenderPolicy;
 import org.fife.ui.rsyntaxtextarea.RSyntaxTextArea;
 import org.fife.ui.rsyntaxtextarea.SyntaxConstants;
 import org.fife.ui.rtextarea.RTextScrollPane;
@@ -31,6 +32,10 @@ public class OnePasswordSessionTabUI extends JPanel {
     private final JSpinner requestIdSpinner;
     private final JLabel errorMessageLabel;
 
+    private final EditorView decryptedPayloadView;
+    private final EditorView httpMessageView;
+    private final RenderPolicy renderPolicy = RenderPolicy.getInstance();
+
     public void setKeyIdInput(String keyIdText) {
         this.keyIdText.setText(keyIdText);
     }
@@ -58,6 +63,9 @@ public class OnePasswordSessionTabUI extends JPanel {
         // Permit using RSyntaxArea in a Burp context
         RSyntaxTextAreaHacks();
 
+        this.decryptedBodyInputDocumentListener = new DecryptedMessageDocumentListener();
+        this.httpMessageDocumentListener = new HttpMessageDocumentListener();
+
         // > Define two main panels
         final var sessionParametersPanel = new JPanel();                // Panel for the session parameters (session key, key id, request id)
 
@@ -137,10 +145,12 @@ public class OnePasswordSessionTabUI extends JPanel {
 
         // >>>> Associate decrypted body label with decrypted body text input
         decryptedPayloadLabel.setLabelFor(decryptedPayloadText);
+        this.decryptedPayloadView = new EditorView(decryptedPayloadText, decryptedBodyInputDocumentListener, SyntaxConstants.SYNTAX_STYLE_JSON, editable);
 
-        // >>> Add label and editor to the decrypted payload panel
+        // >>> Add label, pager and editor to the decrypted payload panel
         decryptedPayloadPanel.setLayout(new BoxLayout(decryptedPayloadPanel, BoxLayout.Y_AXIS));
         decryptedPayloadPanel.add(decryptedPayloadLabelPanel);
+        decryptedPayloadPanel.add(decryptedPayloadView.getPager());
         decryptedPayloadPanel.add(decryptedPayloadScrollPane);
 
         // --- End of decrypted payload panel, start of HTTP message panel
@@ -168,10 +178,12 @@ public class OnePasswordSessionTabUI extends JPanel {
 
         // >>>> Associate HTTP message label with http message text input
         httpMessageLabel.setLabelFor(httpMessageText);
+        this.httpMessageView = new EditorView(httpMessageText, httpMessageDocumentListener, SyntaxConstants.SYNTAX_STYLE_NONE, editable);
 
-        // >>> Add label and editor to the http message panel
+        // >>> Add label, pager and editor to the http message panel
         httpMessagePanel.setLayout(new BoxLayout(httpMessagePanel, BoxLayout.Y_AXIS));
         httpMessagePanel.add(httpMessageLabelPanel);
+        httpMessagePanel.add(httpMessageView.getPager());
         httpMessagePanel.add(httpMessageScrollPane);
 
         // >> Add main panels to the split pane
@@ -236,9 +248,6 @@ public class OnePasswordSessionTabUI extends JPanel {
         keyIdText.getDocument().addDocumentListener(new KeyIdInputDocumentListener());
         requestIdSpinner.addChangeListener(new RequestIdChangeListener());
 
-        this.decryptedBodyInputDocumentListener = new DecryptedMessageDocumentListener();
-        this.httpMessageDocumentListener = new HttpMessageDocumentListener();
-
         if(editable) {
             decryptedPayloadText.getDocument().addDocumentListener(this.decryptedBodyInputDocumentListener);
             httpMessageText.getDocument().addDocumentListener(this.httpMessageDocumentListener);
@@ -302,7 +311,9 @@ public class OnePasswordSessionTabUI extends JPanel {
         private void update(DocumentEvent e) {
             var source = e.getDocument();
             try {
-                main.processDecryptedMessageUpdate(source.getText(0, source.getLength()));
+                final var text = source.getText(0, source.getLength());
+                decryptedPayloadView.edited(text);
+                main.processDecryptedMessageUpdate(text);
             } catch(BadLocationException l) {
                 showError("Failed to read decrypted message.");
             }
@@ -320,7 +331,9 @@ public class OnePasswordSessionTabUI extends JPanel {
             var source = e.getDocument();
 
             try {
-                main.processHttpMessageUpdate(source.getText(0, source.getLength()));
+                final var text = source.getText(0, source.getLength());
+                httpMessageView.edited(text);
+                main.processHttpMessageUpdate(text);
             } catch(BadLocationException l) {
                 showError("Failed to read HTTP message.");
             }
@@ -359,40 +372,164 @@ public class OnePasswordSessionTabUI extends JPanel {
         });
     }
 
-    public void setProcessedDecryptedPayloadText(final String text) {
-        Optional<String> prettyJson = Optional.empty();
+    // Takes text that was formatted already, off the EDT. Results of a stale generation are dropped once they reach the EDT.
+    public void setFormattedDecryptedPayloadText(final CharSequence newText, final CoalescingExecutor.Generation generation) {
+        decryptedPayloadView.update(newText, generation);
+    }
+
+    public void setProcessedHttpMessageText(final CharSequence text, final CoalescingExecutor.Generation generation) {
+        httpMessageView.update(text, generation);
+    }
+
+    // A different message is about to be shown, so paged editors start over at their first page
+    public void resetPaging() {
+        decryptedPayloadView.page = 0;
+        httpMessageView.page = 0;
+    }
+
+    // One of the two editors and what it shows. Only update() is called off the EDT.
+    private class EditorView {
+        private final RSyntaxTextArea textArea;
+        private final DocumentListener listener;
+        private final String highlightedStyle;
+        private final boolean editable;
+
+        private final JPanel pager = new JPanel();
+        private final JButton previousPage = new JButton("\u25C0");
+        private final JButton nextPage = new JButton("\u25B6");
+        private final JLabel pagePosition = new JLabel();
+
+        // What the document holds, as of the last change on the EDT. Updates are diffed against this off the EDT.
+        private volatile String shown = "";
+        private volatile int page = 0;
+        private CharSequence fullText = "";
+        private RenderPolicy.Mode mode = RenderPolicy.Mode.HIGHLIGHTED;
+
+        EditorView(RSyntaxTextArea textArea, DocumentListener listener, String highlightedStyle, boolean editable) {
+            this.textArea = textArea;
+            this.listener = listener;
+            this.highlightedStyle = highlightedStyle;
+            this.editable = editable;
+
+            pager.setLayout(new FlowLayout(FlowLayout.LEFT));
+            pager.add(previousPage);
+            pager.add(pagePosition);
+            pager.add(nextPage);
+            pager.setMaximumSize(new Dimension(Integer.MAX_VALUE, pager.getPreferredSize().height));
+            pager.setVisible(false);
+
+            previousPage.addActionListener(e -> showPage(page - 1));
+            nextPage.addActionListener(e -> showPage(page + 1));
+        }
+
+        JPanel getPager() {
+            return pager;
+        }
+
+        void edited(String text) {
+            shown = text;
+            fullText = text; // Paged text is read-only, so edits always cover all of it
+        }
+
+        void update(CharSequence newText, CoalescingExecutor.Generation generation) {
+            final var newMode = renderPolicy.modeFor(newText.length());
+            final int newPage = page;
+            final var basis = shown;
+            final var patch = DocumentPatch.between(basis, visibleText(newText, newMode, newPage));
+
+            SwingUtilities.invokeLater(() -> {
+                if(generation.isStale()) {
+                    return;
+                }
+
+                // The patch only fits if the editor hasn't changed since it was worked out
+                final boolean unchanged = shown == basis && page == newPage;
+                fullText = newText;
+                page = Math.min(page, RenderPolicy.pageCount(newText.length(), renderPolicy.getPageChars()) - 1);
+
+                final var visibleText = visibleText(newText, newMode, page);
+                show(newMode, unchanged && page == newPage ? patch : DocumentPatch.between(shown, visibleText), visibleText);
+            });
+        }
+
+        private void showPage(int requested) {
+            page = Math.max(0, Math.min(requested, RenderPolicy.pageCount(fullText.length(), renderPolicy.getPageChars()) - 1));
+            final var visibleText = visibleText(fullText, mode, page);
+            show(mode, DocumentPatch.between(shown, visibleText), visibleText);
+            textArea.setCaretPosition(0);
+        }
 
-        if(!text.isBlank()) {
+        // Only replaces the part of the document that changed, as setText would re-tokenize and lay out all of it
+        private void show(RenderPolicy.Mode newMode, DocumentPatch patch, String visibleText) {
+            final long start = System.nanoTime();
+            applyMode(newMode);
+            updatePager();
+
+            if(patch.isEmpty()) {
+                shown = visibleText;
+                return;
+            }
+
+            final int prevCaretPosition = textArea.getCaretPosition();
+            final var prevVisibleRect = textArea.getVisibleRect();
+
+            textArea.getDocument().removeDocumentListener(listener);
             try {
-                final var mapper = new ObjectMapper();
-                final var obj = mapper.readTree(text);
-                prettyJson = Optional.ofNullable(mapper.writerWithDefaultPrettyPrinter().writeValueAsString(obj));
-            } catch (JsonProcessingException ignored) { }
+                patch.applyTo(textArea.getDocument());
+            } catch(BadLocationException e) {
+                textArea.setText(visibleText); // Out of sync somehow, start over
+            }
+            if(prevCaretPosition >= 0 && prevCaretPosition < visibleText.length()) {
+                textArea.setCaretPosition(prevCaretPosition);
+            }
+            textArea.scrollRectToVisible(prevVisibleRect);
+            if(editable) {
+                textArea.getDocument().addDocumentListener(listener);
+            }
+            shown = visibleText;
+
+            // Small edits say nothing about what showing a whole text costs. Whatever was queued so far,
+            // including the repaint this update caused, has run by the time this is called.
+            if(patch.getInserted().length() * 2 >= visibleText.length()) {
+                final var renderedMode = newMode;
+                SwingUtilities.invokeLater(() -> renderPolicy.recordRender(renderedMode, visibleText.length(), System.nanoTime() - start));
+            }
         }
 
-        final var newText = prettyJson.orElse(text);
+        private void applyMode(RenderPolicy.Mode newMode) {
+            if(newMode == mode) {
+                return;
+            }
+            mode = newMode;
 
-        SwingUtilities.invokeLater(() -> {
-            final int prevCaretPosition = decryptedPayloadText.getCaretPosition();
-            decryptedPayloadText.getDocument().removeDocumentListener(decryptedBodyInputDocumentListener);
-            decryptedPayloadText.setText(newText);
-            if(prevCaretPosition >= 0 && prevCaretPosition < newText.length()) {
-                decryptedPayloadText.setCaretPosition(prevCaretPosition);
+            textArea.setSyntaxEditingStyle(newMode == RenderPolicy.Mode.HIGHLIGHTED ? highlightedStyle : SyntaxConstants.SYNTAX_STYLE_NONE);
+            textArea.setEditable(editable && newMode != RenderPolicy.Mode.PAGED); // Edits to a page would lose the rest of the text
+            pager.setVisible(newMode == RenderPolicy.Mode.PAGED);
+        }
+
+        private void updatePager() {
+            if(mode != RenderPolicy.Mode.PAGED) {
+                return;
             }
-            decryptedPayloadText.getDocument().addDocumentListener(decryptedBodyInputDocumentListener);
-        });
-    }
 
-    public void setProcessedHttpMessageText(final String text) {
-        SwingUtilities.invokeLater(() -> {
-            final int prevCaretPosition = httpMessageText.getCaretPosition();
-            httpMessageText.getDocument().removeDocumentListener(httpMessageDocumentListener);
-            httpMessageText.setText(text);
-            if(prevCaretPosition >= 0 && prevCaretPosition < text.length()) {
-                httpMessageText.setCaretPosition(prevCaretPosition);
+            final int pageChars = renderPolicy.getPageChars();
+            final int pages = RenderPolicy.pageCount(fullText.length(), pageChars);
+            final int from = RenderPolicy.pageStart(fullText, page, pageChars);
+            final int to = RenderPolicy.pageStart(fullText, page + 1, pageChars);
+            pagePosition.setText(String.format("Characters %,d to %,d of %,d, read-only (page %d of %d)", from + 1, to, fullText.length(), page + 1, pages));
+            previousPage.setEnabled(page > 0);
+            nextPage.setEnabled(page < pages - 1);
+        }
+
+        // Only a paged text can be too big for a String, and then only its visible page is copied out
+        private String visibleText(CharSequence text, RenderPolicy.Mode mode, int page) {
+            if(mode != RenderPolicy.Mode.PAGED) {
+                return text.toString();
             }
-            httpMessageText.getDocument().addDocumentListener(httpMessageDocumentListener);
-        });
+
+            final int pageChars = renderPolicy.getPageChars();
+            return text.subSequence(RenderPolicy.pageStart(text, page, pageChars), RenderPolicy.pageStart(text, page + 1, pageChars)).toString();
+        }
     }
 
     public String getSelectedData() {
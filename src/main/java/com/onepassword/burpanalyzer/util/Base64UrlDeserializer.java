@@ -5,23 +5,97 @@ import com.fasterxml.jackson.databind.DeserializationContext;
 import com.fasterxml.jackson.databind.JsonDeserializer;
 
 import java.io.IOException;
-import java.util.Base64;
+import java.util.Arrays;
 
 public class Base64UrlDeserializer extends JsonDeserializer<byte[]> {
+    private static final int INVALID = -1;
+    private static final int PADDING = -2;
+    private static final int[] VALUES = new int[256];
+
+    static {
+        Arrays.fill(VALUES, INVALID);
+        final var alphabet = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_";
+        for(int i = 0; i < alphabet.length(); i++) {
+            VALUES[alphabet.charAt(i)] = i;
+        }
+        VALUES['='] = PADDING;
+    }
+
     @Override
     public byte[] deserialize(JsonParser p, DeserializationContext ctxt) throws IOException {
         if(p.hasCurrentToken()) {
-            var b64 = p.getText();
-            if(b64 == null || b64.isEmpty()) {
+            // Decode straight from the parser's buffer instead of making a String of the whole value first
+            final var chars = p.getTextCharacters();
+            final int length = p.getTextLength();
+            if(chars == null || length == 0) {
                 throw new IOException("Empty string");
             }
             try {
-                return Base64.getUrlDecoder().decode(b64);
+                return decodeBase64Url(chars, p.getTextOffset(), length);
             } catch (IllegalArgumentException e) {
                 throw new IOException("Not valid base64 URL");
             }
         }
         throw new IOException("Empty value");
     }
-}
 
+    // Accepts exactly what Base64.getUrlDecoder() accepts: padding is optional, but has to be complete if present
+    static byte[] decodeBase64Url(char[] input, int offset, int length) {
+        final int end = offset + length;
+
+        int unpadded = length;
+        if(unpadded > 0 && input[end - 1] == '=') {
+            unpadded--;
+            if(unpadded > 0 && input[end - 2] == '=') {
+                unpadded--;
+            }
+        }
+        final var output = new byte[unpadded / 4 * 3 + Math.max(0, unpadded % 4 - 1)];
+
+        int in = offset;
+        int out = 0;
+        int bits = 0;
+        int shift = 18;
+
+        while(in < end) {
+            final int c = input[in++];
+            final int value = c < 256 ? VALUES[c] : INVALID;
+
+            if(value < 0) {
+                if(value == PADDING) {
+                    // "=" alone is unnecessary, and "xx=" needs a second "="
+                    if(shift == 18 || (shift == 6 && (in == end || input[in++] != '='))) {
+                        throw new IllegalArgumentException("Wrong 4-character ending unit");
+                    }
+                    break;
+                }
+                throw new IllegalArgumentException("Illegal base64 URL character");
+            }
+
+            bits |= value << shift;
+            shift -= 6;
+            if(shift < 0) {
+                output[out++] = (byte) (bits >> 16);
+                output[out++] = (byte) (bits >> 8);
+                output[out++] = (byte) bits;
+                shift = 18;
+                bits = 0;
+            }
+        }
+
+        if(shift == 6) {
+            output[out++] = (byte) (bits >> 16);
+        } else if(shift == 0) {
+            output[out++] = (byte) (bits >> 16);
+            output[out++] = (byte) (bits >> 8);
+        } else if(shift == 12) {
+            throw new IllegalArgumentException("Last unit does not have enough valid bits");
+        }
+
+        if(in < end) {
+            throw new IllegalArgumentException("Unexpected characters after padding");
+        }
+
+        return out == output.length ? output : Arrays.copyOf(output, out);
+    }
+}
@@ -7,80 +7,41 @@ import com.fasterxml.jackson.databind.SerializerProvider;
 import java.io.IOException;
 
 public class Base64UrlSerializer extends JsonSerializer<byte[]> {
+    private static final char[] ALPHABET = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_".toCharArray();
+
     @Override
     public void serialize(byte[] value, JsonGenerator gen, SerializerProvider serializers) throws IOException {
-        final var result = customEncodeBase64Url(value);
-        if(result != null) {
-            gen.writeString(result);
-        } else {
-            throw new IOException("Failed to encode base64.");
-        }
-    }
-
-    private static String customEncodeBase64Url(byte[] input) {
-        final var builder = new StringBuilder();
-        int intermediateData = 0;
-
-        for(int index = 0; index < input.length; index++) {
-            // The "sub-index", the position of the byte
-            // within the group of 3 bytes
-            final int position = index % 3;
-
-            // Shift the byte left 16, 8, or 0 bits,
-            // then OR it into place in the 24-bit group
-            final int byteVal = ((int) input[index]) & 0xFF; // Java doesn't have unsigned bytes, so we force that to happen
-            intermediateData |= byteVal << ((16 >>> position) & 24);
-
-            // If it's the last byte in the set of three,
-            // or if it's the last byte of the whole array, build the string
-            if(position == 2 || index == input.length - 1) {
-                // Split the 24-bit value into four 6-bit values,
-                // each representing a base64url character,
-                // and retrieve the ASCII char code for each character,
-                // then annex the four characters to the result
-                builder.append(new char[] {
-                    mapBase64UrlIndexToASCII((intermediateData >>> 18) & 63),
-                    mapBase64UrlIndexToASCII((intermediateData >>> 12) & 63),
-                    mapBase64UrlIndexToASCII((intermediateData >>> 6) & 63),
-                    mapBase64UrlIndexToASCII((intermediateData & 63))
-                });
-
-                // Reset the 24-bit int for the next group of 3 bytes
-                intermediateData = 0;
-            }
-        }
-
-        // Remove extra bytes from the end
-        final int paddingLength = (3 - (input.length % 3)) % 3;
-        return builder.substring(0, builder.length() - paddingLength);
+        final var encoded = encodeBase64Url(value);
+        gen.writeString(encoded, 0, encoded.length);
     }
 
-    private static char mapBase64UrlIndexToASCII(int index) {
-        int codepoint;
-
-        if(index < 26) {
-            // Shift capital letters from [0-25] to [65-90]
-            codepoint = index + 65;
-        } else if(index < 52) {
-            // Shift lowercase letters from [26-51] to [97-122]
-            codepoint = index + 71;
-        } else if(index < 62) {
-            // Shift numbers from [52-61] to [48-57]
-            codepoint = index - 4;
-        } else if(index == 62) {
-            // Shift "-" from 62 to 45.
-            codepoint = 45;
-        } else {
-            // Shift "_" from 63 to 95.
-            codepoint = 95;
+    // Base64 URL without padding, written into a single array of exactly the right size
+    static char[] encodeBase64Url(byte[] input) {
+        final int fullGroups = input.length / 3;
+        final int remainder = input.length % 3;
+        final var output = new char[fullGroups * 4 + (remainder == 0 ? 0 : remainder + 1)];
+
+        int in = 0;
+        int out = 0;
+        for(int group = 0; group < fullGroups; group++) {
+            // Java doesn't have unsigned bytes, so we force that to happen
+            final int bits = (input[in++] & 0xFF) << 16 | (input[in++] & 0xFF) << 8 | (input[in++] & 0xFF);
+            output[out++] = ALPHABET[(bits >>> 18) & 63];
+            output[out++] = ALPHABET[(bits >>> 12) & 63];
+            output[out++] = ALPHABET[(bits >>> 6) & 63];
+            output[out++] = ALPHABET[bits & 63];
         }
 
-        final var chars = Character.toChars(codepoint);
-
-        if(chars.length != 1) {
-            throw new IllegalArgumentException("Unable to decode base64 index to a single character.");
+        // A trailing group of one or two bytes becomes two or three characters
+        if(remainder > 0) {
+            final int bits = (input[in] & 0xFF) << 16 | (remainder == 2 ? (input[in + 1] & 0xFF) << 8 : 0);
+            output[out++] = ALPHABET[(bits >>> 18) & 63];
+            output[out++] = ALPHABET[(bits >>> 12) & 63];
+            if(remainder == 2) {
+                output[out] = ALPHABET[(bits >>> 6) & 63];
+            }
         }
 
-        return chars[0];
+        return output;
     }
 }
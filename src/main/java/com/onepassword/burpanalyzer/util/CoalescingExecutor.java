@@ -0,0 +1,151 @@
+package com.onepassword.burpanalyzer.util;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+// Runs background work for all editor tabs on one small, shared pool.
+// Work is submitted through lanes: a lane runs at most one task at a time, and a task that is still waiting
+// when a newer one arrives on the same lane is dropped, so only the latest input ever gets processed.
+// Lanes are grouped, one group per editor tab. Every submission to a group is stamped from one counter,
+// so work is stale as soon as anything newer was submitted to the group, whichever lane it went to.
+public class CoalescingExecutor {
+    private static final CoalescingExecutor instance = new CoalescingExecutor();
+
+    public static CoalescingExecutor getInstance() {
+        return instance;
+    }
+
+    private final ThreadPoolExecutor pool;
+
+    private CoalescingExecutor() {
+        final int threads = Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors()));
+        // Every lane has at most one drain queued, so the queue is bounded by the number of lanes
+        this.pool = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), new WorkerThreadFactory());
+        this.pool.allowCoreThreadTimeOut(true);
+    }
+
+    public LaneGroup newLaneGroup() {
+        return new LaneGroup(this.pool);
+    }
+
+    // A lane of its own, for work that doesn't compete with any other
+    public Lane newLane() {
+        return newLaneGroup().newLane();
+    }
+
+    // Work submitted to a lane. It is told which generation it belongs to, so it can stop early and
+    // have its results discarded once its group has moved on to newer input.
+    public interface Task {
+        void run(Generation generation);
+    }
+
+    public static class Generation {
+        private final LaneGroup group;
+        private final long value;
+
+        private Generation(LaneGroup group, long value) {
+            this.group = group;
+            this.value = value;
+        }
+
+        public boolean isCurrent() {
+            return group.generation.get() == value;
+        }
+
+        public boolean isStale() {
+            return !isCurrent();
+        }
+    }
+
+    public static class LaneGroup {
+        private final ExecutorService pool;
+        private final AtomicLong generation = new AtomicLong();
+        private final List<Lane> lanes = new CopyOnWriteArrayList<>();
+
+        private LaneGroup(ExecutorService pool) {
+            this.pool = pool;
+        }
+
+        public Lane newLane() {
+            final var lane = new Lane(this);
+            lanes.add(lane);
+            return lane;
+        }
+
+        // Drops pending work on every lane and marks running work as stale, e.g. when the tab is showing a different message
+        public void invalidate() {
+            generation.incrementAndGet();
+            for(final var lane: lanes) {
+                lane.pending.set(null);
+            }
+        }
+    }
+
+    public static class Lane {
+        private final LaneGroup group;
+        private final AtomicReference<Runnable> pending = new AtomicReference<>();
+        private final AtomicBoolean scheduled = new AtomicBoolean(false);
+
+        private Lane(LaneGroup group) {
+            this.group = group;
+        }
+
+        public void submit(Task task) {
+            final var stamp = new Generation(group, group.generation.incrementAndGet());
+            pending.set(() -> {
+                // Superseded by work on another lane while waiting
+                if(stamp.isCurrent()) {
+                    task.run(stamp);
+                }
+            });
+            scheduleIfIdle();
+        }
+
+        // Drops pending work and marks running work of the whole group as stale
+        public void invalidate() {
+            group.invalidate();
+        }
+
+        private void scheduleIfIdle() {
+            if(scheduled.compareAndSet(false, true)) {
+                group.pool.execute(this::runLatest);
+            }
+        }
+
+        private void runLatest() {
+            try {
+                final var task = pending.getAndSet(null);
+                if(task != null) {
+                    task.run();
+                }
+            } finally {
+                scheduled.set(false);
+                // Something may have arrived while running. Go back through the pool rather than looping here,
+                // so a tab that is being typed into continuously can't keep a worker to itself.
+                if(pending.get() != null) {
+                    scheduleIfIdle();
+                }
+            }
+        }
+    }
+
+    private static class WorkerThreadFactory implements ThreadFactory {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            final var thread = new Thread(runnable, "1Password-session-worker-" + count.incrementAndGet());
+            thread.setDaemon(true); // Never keep Burp alive on exit
+            return thread;
+        }
+    }
+}
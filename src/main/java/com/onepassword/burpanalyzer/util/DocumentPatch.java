@@ -0,0 +1,67 @@
+package com.onepassword.burpanalyzer.util;
+
+import javax.swing.text.AbstractDocument;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Document;
+
+// The smallest single replacement that turns one text into another: everything between their common prefix
+// and common suffix. Finding it is linear in the text, but applying it only costs as much as the change,
+// so it can be worked out off the EDT and leave the EDT with just the part of the document that changed.
+public final class DocumentPatch {
+    private final int offset;
+    private final int removedLength;
+    private final String inserted;
+
+    private DocumentPatch(int offset, int removedLength, String inserted) {
+        this.offset = offset;
+        this.removedLength = removedLength;
+        this.inserted = inserted;
+    }
+
+    public static DocumentPatch between(String current, String updated) {
+        final int limit = Math.min(current.length(), updated.length());
+
+        int prefix = 0;
+        while(prefix < limit && current.charAt(prefix) == updated.charAt(prefix)) {
+            prefix++;
+        }
+
+        // The suffix can't overlap the prefix, e.g. for "aa" to "aaa"
+        int suffix = 0;
+        while(suffix < limit - prefix && current.charAt(current.length() - 1 - suffix) == updated.charAt(updated.length() - 1 - suffix)) {
+            suffix++;
+        }
+
+        // Don't cut a surrogate pair in half at either end
+        if(prefix > 0 && Character.isHighSurrogate(current.charAt(prefix - 1))) {
+            prefix--;
+        }
+        if(suffix > 0 && Character.isLowSurrogate(current.charAt(current.length() - suffix))) {
+            suffix--;
+        }
+
+        return new DocumentPatch(prefix, current.length() - prefix - suffix, updated.substring(prefix, updated.length() - suffix));
+    }
+
+    public boolean isEmpty() {
+        return removedLength == 0 && inserted.isEmpty();
+    }
+
+    public int getOffset() { return offset; }
+    public int getRemovedLength() { return removedLength; }
+    public String getInserted() { return inserted; }
+
+    // The document must still hold the text this patch was made from
+    public void applyTo(Document document) throws BadLocationException {
+        if(isEmpty()) {
+            return;
+        }
+
+        if(document instanceof AbstractDocument) {
+            ((AbstractDocument) document).replace(offset, removedLength, inserted, null);
+        } else {
+            document.remove(offset, removedLength);
+            document.insertString(offset, inserted, null);
+        }
+    }
+}
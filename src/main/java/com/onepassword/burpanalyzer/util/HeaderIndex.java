@@ -0,0 +1,162 @@
+package com.onepassword.burpanalyzer.util;
+
+import java.util.List;
+import java.util.Optional;
+
+// Everything the extension needs from a message's headers, collected in a single pass.
+// Header names are matched case-insensitively as prefixes, without lowercasing each header line.
+// Build one per message and hand it to everyone that needs to look at the headers.
+public final class HeaderIndex {
+    private static final String CSP_HEADER_PREFIX = "Content-Security-Policy: ";
+    private static final String ONEPASSWORD_CSP_MARKER = "c.1password.com";
+
+    private final String sessionIdHeader;
+    private final boolean multipleSessionIdHeaders;
+    private final String sessionId;
+    private final boolean sessionIdHeaderWellFormed;
+
+    private final String macHeader;
+    private final boolean multipleMacHeaders;
+    private final boolean macHeaderWellFormed;
+    private final String macVersion;
+    private final String requestIdText;
+    private final String macValue;
+
+    private final boolean onePasswordCsp;
+
+    public static HeaderIndex of(List<String> headers) {
+        String sessionIdHeader = null;
+        boolean multipleSessionIdHeaders = false;
+        String macHeader = null;
+        boolean multipleMacHeaders = false;
+        boolean onePasswordCsp = false;
+
+        for(final var header: headers) {
+            if(startsWithIgnoreCase(header, OnePasswordHeaders.SESSION_HEADER_NAME)) {
+                if(sessionIdHeader == null) {
+                    sessionIdHeader = header;
+                } else if(!sessionIdHeader.equals(header)) { // Repeating the exact same header is harmless
+                    multipleSessionIdHeaders = true;
+                }
+            } else if(startsWithIgnoreCase(header, OnePasswordHeaders.MAC_HEADER_NAME)) {
+                if(macHeader == null) {
+                    macHeader = header;
+                } else if(!macHeader.equals(header)) {
+                    multipleMacHeaders = true;
+                }
+            } else if(!onePasswordCsp && header.startsWith(CSP_HEADER_PREFIX)) {
+                onePasswordCsp = header.indexOf(ONEPASSWORD_CSP_MARKER, CSP_HEADER_PREFIX.length()) >= 0;
+            }
+        }
+
+        return new HeaderIndex(sessionIdHeader, multipleSessionIdHeaders, macHeader, multipleMacHeaders, onePasswordCsp);
+    }
+
+    private HeaderIndex(String sessionIdHeader, boolean multipleSessionIdHeaders, String macHeader, boolean multipleMacHeaders, boolean onePasswordCsp) {
+        this.sessionIdHeader = sessionIdHeader;
+        this.multipleSessionIdHeaders = multipleSessionIdHeaders;
+        this.sessionId = headerValue(sessionIdHeader);
+        this.sessionIdHeaderWellFormed = hasSingleColon(sessionIdHeader);
+
+        this.macHeader = macHeader;
+        this.multipleMacHeaders = multipleMacHeaders;
+        this.macHeaderWellFormed = hasSingleColon(macHeader);
+
+        // The MAC header value looks like v1|<request id>|<mac>
+        final var macHeaderValue = headerValue(macHeader);
+        final int firstBar = macHeaderValue == null ? -1 : macHeaderValue.indexOf('|');
+        final int secondBar = firstBar < 0 ? -1 : macHeaderValue.indexOf('|', firstBar + 1);
+        if(secondBar > 0 && secondBar < macHeaderValue.length() - 1 && macHeaderValue.indexOf('|', secondBar + 1) < 0) {
+            this.macVersion = macHeaderValue.substring(0, firstBar);
+            this.requestIdText = macHeaderValue.substring(firstBar + 1, secondBar);
+            this.macValue = macHeaderValue.substring(secondBar + 1);
+        } else {
+            this.macVersion = null;
+            this.requestIdText = null;
+            this.macValue = null;
+        }
+
+        this.onePasswordCsp = onePasswordCsp;
+    }
+
+    public boolean hasSessionIdHeader() {
+        return sessionIdHeader != null;
+    }
+
+    public boolean hasMultipleSessionIdHeaders() {
+        return multipleSessionIdHeaders;
+    }
+
+    // Whether the session ID header is "name: value" without any other colons
+    public boolean isSessionIdHeaderWellFormed() {
+        return sessionIdHeaderWellFormed;
+    }
+
+    public Optional<String> getSessionId() {
+        return Optional.ofNullable(sessionId);
+    }
+
+    public boolean hasMacHeader() {
+        return macHeader != null;
+    }
+
+    public boolean hasMultipleMacHeaders() {
+        return multipleMacHeaders;
+    }
+
+    public boolean isMacHeaderWellFormed() {
+        return macHeaderWellFormed && macValue != null;
+    }
+
+    public Optional<String> getMacVersion() {
+        return Optional.ofNullable(macVersion);
+    }
+
+    // The request ID as it appears in the MAC header, which might not be a number
+    public Optional<String> getRequestIdText() {
+        return Optional.ofNullable(requestIdText);
+    }
+
+    public Optional<Integer> getRequestId() {
+        if(requestIdText == null) {
+            return Optional.empty();
+        }
+
+        try {
+            return Optional.of(Integer.valueOf(requestIdText));
+        } catch (NumberFormatException e) {
+            return Optional.empty();
+        }
+    }
+
+    public Optional<String> getMacValue() {
+        return Optional.ofNullable(macValue);
+    }
+
+    // Responses don't have as clear markers, so we're matching on the contents of the CSP
+    public boolean hasOnePasswordCsp() {
+        return onePasswordCsp;
+    }
+
+    private static boolean startsWithIgnoreCase(String header, String name) {
+        return header.regionMatches(true, 0, name, 0, name.length());
+    }
+
+    private static String headerValue(String header) {
+        if(header == null) {
+            return null;
+        }
+
+        final int colon = header.indexOf(':');
+        return colon < 0 ? null : header.substring(colon + 1).trim();
+    }
+
+    private static boolean hasSingleColon(String header) {
+        if(header == null) {
+            return false;
+        }
+
+        final int colon = header.indexOf(':');
+        return colon >= 0 && header.indexOf(':', colon + 1) < 0;
+    }
+}
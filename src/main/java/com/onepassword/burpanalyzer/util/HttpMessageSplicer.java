@@ -0,0 +1,100 @@
+package com.onepassword.burpanalyzer.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+
+// Edits raw HTTP messages in place of the old String round trips: the result is assembled with a single
+// copy of the untouched parts, so the work done scales with the message once rather than per conversion.
+// Header names and values are ISO-8859-1, matching how Burp maps bytes to text.
+public final class HttpMessageSplicer {
+    private static final byte[] CONTENT_LENGTH = "Content-Length".getBytes(StandardCharsets.ISO_8859_1);
+
+    private HttpMessageSplicer() {}
+
+    // Replaces the value of the first header called headerName, empty if the message has no such header
+    public static Optional<byte[]> replaceHeaderValue(byte[] message, int bodyOffset, String headerName, String value) {
+        final var span = findHeaderValue(message, bodyOffset, headerName.getBytes(StandardCharsets.ISO_8859_1));
+        if(span == null) {
+            return Optional.empty();
+        }
+
+        final var replacement = value.getBytes(StandardCharsets.ISO_8859_1);
+        final var result = new byte[message.length - (span[1] - span[0]) + replacement.length];
+        System.arraycopy(message, 0, result, 0, span[0]);
+        System.arraycopy(replacement, 0, result, span[0], replacement.length);
+        System.arraycopy(message, span[1], result, span[0] + replacement.length, message.length - span[1]);
+        return Optional.of(result);
+    }
+
+    // Replaces everything from bodyOffset on, keeping a Content-Length header in step with the new body
+    public static byte[] replaceBody(byte[] message, int bodyOffset, byte[] body) {
+        final var span = findHeaderValue(message, bodyOffset, CONTENT_LENGTH);
+
+        if(span == null) {
+            final var result = new byte[bodyOffset + body.length];
+            System.arraycopy(message, 0, result, 0, bodyOffset);
+            System.arraycopy(body, 0, result, bodyOffset, body.length);
+            return result;
+        }
+
+        final var length = Integer.toString(body.length).getBytes(StandardCharsets.ISO_8859_1);
+        final int headerEnd = bodyOffset - (span[1] - span[0]) + length.length;
+        final var result = new byte[headerEnd + body.length];
+        System.arraycopy(message, 0, result, 0, span[0]);
+        System.arraycopy(length, 0, result, span[0], length.length);
+        System.arraycopy(message, span[1], result, span[0] + length.length, bodyOffset - span[1]);
+        System.arraycopy(body, 0, result, headerEnd, body.length);
+        return result;
+    }
+
+    // Start (inclusive) and end (exclusive) of a header's value without surrounding whitespace, or null if it's missing.
+    // The first line is the request or status line and is never a header.
+    private static int[] findHeaderValue(byte[] message, int bodyOffset, byte[] name) {
+        final int headerEnd = Math.min(bodyOffset, message.length);
+        int lineStart = nextLineStart(message, 0, headerEnd);
+
+        while(lineStart < headerEnd) {
+            final int nextLine = nextLineStart(message, lineStart, headerEnd);
+            int lineEnd = nextLine;
+            while(lineEnd > lineStart && (message[lineEnd - 1] == '\n' || message[lineEnd - 1] == '\r')) {
+                lineEnd--;
+            }
+
+            if(RawHeaderFilter.regionMatchesIgnoreCase(message, lineStart, name)) {
+                int colon = lineStart + name.length;
+                while(colon < lineEnd && isSpace(message[colon])) {
+                    colon++;
+                }
+
+                if(colon < lineEnd && message[colon] == ':') {
+                    int valueStart = colon + 1;
+                    while(valueStart < lineEnd && isSpace(message[valueStart])) {
+                        valueStart++;
+                    }
+                    int valueEnd = lineEnd;
+                    while(valueEnd > valueStart && isSpace(message[valueEnd - 1])) {
+                        valueEnd--;
+                    }
+                    return new int[]{valueStart, valueEnd};
+                }
+            }
+
+            lineStart = nextLine;
+        }
+
+        return null;
+    }
+
+    private static int nextLineStart(byte[] message, int from, int limit) {
+        for(int i = from; i < limit; i++) {
+            if(message[i] == '\n') {
+                return i + 1;
+            }
+        }
+        return limit;
+    }
+
+    private static boolean isSpace(byte b) {
+        return b == ' ' || b == '\t';
+    }
+}
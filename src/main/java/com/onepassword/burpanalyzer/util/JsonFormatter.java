@@ -0,0 +1,46 @@
+package com.onepassword.burpanalyzer.util;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+// Pretty prints decrypted payloads for display. Tokens are copied straight from a parser to a pretty printing
+// generator, so no tree of the payload is ever built.
+public final class JsonFormatter {
+    // Beyond this, formatting takes longer and costs more memory than looking at the raw payload is worth
+    public static final int DEFAULT_MAX_FORMATTED_CHARS = Integer.getInteger("onepassword.payloads.formatMaxChars", 4 * 1024 * 1024);
+
+    private JsonFormatter() {}
+
+    // Text that isn't exactly one JSON value, or is too big, is returned as it is
+    public static String prettyPrint(String text) {
+        return prettyPrint(text, DEFAULT_MAX_FORMATTED_CHARS);
+    }
+
+    public static String prettyPrint(String text, int maxChars) {
+        if(text.isBlank() || text.length() > maxChars) {
+            return text;
+        }
+
+        // Pretty printing mostly adds whitespace, so start with some room to grow
+        final var output = new StringWriter(text.length() + text.length() / 2);
+        final var factory = JsonSupport.factory();
+        try(final var parser = factory.createParser(text);
+            final var generator = factory.createGenerator(output)) {
+            generator.useDefaultPrettyPrinter();
+
+            if(parser.nextToken() == null) {
+                return text;
+            }
+            generator.copyCurrentStructure(parser);
+
+            // Anything after the first value would be lost if this was shown and then edited
+            if(parser.nextToken() != null) {
+                return text;
+            }
+        } catch(IOException e) {
+            return text;
+        }
+
+        return output.toString();
+    }
+}
@@ -0,0 +1,38 @@
+package com.onepassword.burpanalyzer.util;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.onepassword.burpanalyzer.model.EncryptedMessage;
+
+// The extension's one Jackson configuration. Every ObjectMapper keeps its own serializer and deserializer caches,
+// so with a mapper per editor each of them introspected EncryptedMessage again. Readers and writers are immutable
+// and thread safe, and the typed ones look up their (de)serializer once, when they're created.
+public final class JsonSupport {
+    private static final ObjectMapper mapper = new ObjectMapper();
+
+    private static final ObjectReader encryptedMessageReader = mapper.readerFor(EncryptedMessage.class);
+    private static final ObjectWriter encryptedMessageWriter = mapper.writerFor(EncryptedMessage.class);
+    private static final ObjectReader treeReader = mapper.reader();
+
+    private JsonSupport() {}
+
+    // For streaming parsers and generators
+    public static JsonFactory factory() {
+        return mapper.getFactory();
+    }
+
+    public static ObjectReader encryptedMessageReader() {
+        return encryptedMessageReader;
+    }
+
+    public static ObjectWriter encryptedMessageWriter() {
+        return encryptedMessageWriter;
+    }
+
+    // For any JSON, read as a JsonNode tree
+    public static ObjectReader treeReader() {
+        return treeReader;
+    }
+}
@@ -0,0 +1,53 @@
+package com.onepassword.burpanalyzer.util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// Text in a file, one char per byte like IExtensionHelpers.bytesToString, read through a read-only memory mapping.
+// Only the parts being read are loaded, and they live in the OS's page cache rather than the heap,
+// so a paged editor can show text far bigger than what would fit in a String.
+public class MappedText implements CharSequence {
+    private final ByteBuffer bytes;
+
+    private MappedText(ByteBuffer bytes) {
+        this.bytes = bytes;
+    }
+
+    // The mapping stays valid after the file is closed, and on most systems also after it's deleted
+    public static MappedText map(Path file) throws IOException {
+        try(final var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return new MappedText(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    @Override
+    public int length() {
+        return bytes.limit();
+    }
+
+    @Override
+    public char charAt(int index) {
+        return (char) (bytes.get(index) & 0xff);
+    }
+
+    // Copies the range onto the heap, so only ask for as much as is going to be shown
+    @Override
+    public String subSequence(int start, int end) {
+        if(start < 0 || end > length() || start > end) {
+            throw new IndexOutOfBoundsException("Range " + start + " to " + end + " is outside of text of length " + length());
+        }
+
+        final var range = new byte[end - start];
+        bytes.get(start, range); // Absolute, so concurrent readers don't move each other's position
+        return new String(range, StandardCharsets.ISO_8859_1);
+    }
+
+    @Override
+    public String toString() {
+        return subSequence(0, length());
+    }
+}
@@ -0,0 +1,86 @@
+package com.onepassword.burpanalyzer.util;
+
+import java.nio.charset.StandardCharsets;
+
+// Cheap checks on a raw HTTP message, used to rule out messages before asking Burp to analyze them.
+// Only the header region is scanned and nothing is allocated. A match only means "maybe",
+// so callers still confirm it with a HeaderIndex, but a miss is final.
+public final class RawHeaderFilter {
+    private static final byte[] MAC_HEADER_NAME = OnePasswordHeaders.MAC_HEADER_NAME.getBytes(StandardCharsets.ISO_8859_1);
+    private static final byte[] CSP_HEADER_PREFIX = "Content-Security-Policy: ".getBytes(StandardCharsets.ISO_8859_1);
+    private static final byte[] ONEPASSWORD_CSP_MARKER = "c.1password.com".getBytes(StandardCharsets.ISO_8859_1);
+
+    private RawHeaderFilter() {}
+
+    public static boolean mayBeOnePasswordRequest(byte[] message) {
+        for(int line = nextLine(message, 0); line >= 0; line = nextLine(message, line)) {
+            if(regionMatchesIgnoreCase(message, line, MAC_HEADER_NAME)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public static boolean mayBeOnePasswordResponse(byte[] message) {
+        for(int line = nextLine(message, 0); line >= 0; line = nextLine(message, line)) {
+            if(regionMatches(message, line, CSP_HEADER_PREFIX) && lineContains(message, line + CSP_HEADER_PREFIX.length, ONEPASSWORD_CSP_MARKER)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Start of the header line after the one at from, or -1 once the blank line ending the headers is reached.
+    // Both \r\n and a bare \n end a line, like Burp accepts them.
+    private static int nextLine(byte[] message, int from) {
+        for(int i = from; i < message.length; i++) {
+            if(message[i] == '\n') {
+                final int start = i + 1;
+                final boolean blank = start < message.length &&
+                        (message[start] == '\n' || (message[start] == '\r' && start + 1 < message.length && message[start + 1] == '\n'));
+                return blank || start >= message.length ? -1 : start;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean regionMatches(byte[] message, int offset, byte[] expected) {
+        if(offset + expected.length > message.length) {
+            return false;
+        }
+        for(int i = 0; i < expected.length; i++) {
+            if(message[offset + i] != expected[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Only used with ASCII letters, digits and '-', so folding bit 0x20 on letters is enough
+    static boolean regionMatchesIgnoreCase(byte[] message, int offset, byte[] expected) {
+        if(offset + expected.length > message.length) {
+            return false;
+        }
+        for(int i = 0; i < expected.length; i++) {
+            final int actual = message[offset + i];
+            final int wanted = expected[i];
+            if(actual != wanted && !(isAsciiLetter(wanted) && (actual | 0x20) == (wanted | 0x20))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isAsciiLetter(int b) {
+        return (b >= 'a' && b <= 'z') || (b >= 'A' && b <= 'Z');
+    }
+
+    private static boolean lineContains(byte[] message, int from, byte[] needle) {
+        for(int i = from; i + needle.length <= message.length && message[i] != '\n'; i++) {
+            if(message[i] == needle[0] && regionMatches(message, i, needle)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,116 @@
+package com.onepassword.burpanalyzer.util;
+
+import java.time.Duration;
+
+// Decides how much effort the editors put into showing a text of a given size.
+// Small texts get syntax highlighting, bigger ones are shown as plain text, and giant ones are paged, so only
+// one window of them is ever in a document. The size limits can be configured, but they also follow what
+// rendering actually costs on this machine: once a render was timed, a mode is only used for texts it
+// can show within the render budget.
+public class RenderPolicy {
+    public enum Mode { HIGHLIGHTED, PLAIN, PAGED }
+
+    public static final int DEFAULT_HIGHLIGHT_MAX_CHARS = 512 * 1024;
+    public static final int DEFAULT_PLAIN_MAX_CHARS = 8 * 1024 * 1024;
+    public static final int DEFAULT_PAGE_CHARS = 256 * 1024;
+    public static final Duration DEFAULT_RENDER_BUDGET = Duration.ofMillis(200);
+
+    // Can be tuned when starting Burp, e.g. -Donepassword.render.highlightMaxChars=1048576
+    private static final RenderPolicy instance = new RenderPolicy(
+        Integer.getInteger("onepassword.render.highlightMaxChars", DEFAULT_HIGHLIGHT_MAX_CHARS),
+        Integer.getInteger("onepassword.render.plainMaxChars", DEFAULT_PLAIN_MAX_CHARS),
+        Integer.getInteger("onepassword.render.pageChars", DEFAULT_PAGE_CHARS),
+        Duration.ofMillis(Long.getLong("onepassword.render.budgetMillis", DEFAULT_RENDER_BUDGET.toMillis()))
+    );
+
+    public static RenderPolicy getInstance() {
+        return instance;
+    }
+
+    // Timing smaller renders mostly measures overhead, which would make every size look affordable
+    static final int MIN_TIMED_CHARS = 64 * 1024;
+    private static final double SMOOTHING = 0.3;
+
+    private final int highlightMaxChars;
+    private final int plainMaxChars;
+    private final int pageChars;
+    private final long budgetNanos;
+
+    // Measured render cost per character for each mode, 0 while nothing was measured
+    private volatile double highlightedNanosPerChar = 0;
+    private volatile double plainNanosPerChar = 0;
+
+    public RenderPolicy(int highlightMaxChars, int plainMaxChars, int pageChars, Duration budget) {
+        if(highlightMaxChars < 0 || plainMaxChars < highlightMaxChars || pageChars < 1 || budget.isNegative() || budget.isZero()) {
+            throw new IllegalArgumentException("Render limits must be positive, and plain text must allow at least as much as highlighting");
+        }
+        this.highlightMaxChars = highlightMaxChars;
+        this.plainMaxChars = plainMaxChars;
+        this.pageChars = pageChars;
+        this.budgetNanos = budget.toNanos();
+    }
+
+    public Mode modeFor(int chars) {
+        if(chars <= getHighlightMaxChars()) {
+            return Mode.HIGHLIGHTED;
+        }
+        if(chars <= getPlainMaxChars()) {
+            return Mode.PLAIN;
+        }
+        return Mode.PAGED;
+    }
+
+    // Called with how long showing chars characters took in a mode, from the start of the update until it was painted
+    public void recordRender(Mode mode, int chars, long nanos) {
+        if(chars < MIN_TIMED_CHARS || nanos <= 0) {
+            return;
+        }
+
+        final double nanosPerChar = (double) nanos / chars;
+        if(mode == Mode.HIGHLIGHTED) {
+            highlightedNanosPerChar = smooth(highlightedNanosPerChar, nanosPerChar);
+        } else if(mode == Mode.PLAIN) {
+            plainNanosPerChar = smooth(plainNanosPerChar, nanosPerChar);
+        }
+        // Paged renders are a page at most, they say nothing about larger texts
+    }
+
+    public int getHighlightMaxChars() {
+        return Math.min(highlightMaxChars, affordableChars(highlightedNanosPerChar));
+    }
+
+    // Never below what can be highlighted: if highlighting a text is affordable, showing it plain is too
+    public int getPlainMaxChars() {
+        return Math.max(getHighlightMaxChars(), Math.min(plainMaxChars, affordableChars(plainNanosPerChar)));
+    }
+
+    public int getPageChars() {
+        return pageChars;
+    }
+
+    private int affordableChars(double nanosPerChar) {
+        if(nanosPerChar <= 0) {
+            return Integer.MAX_VALUE;
+        }
+        return (int) Math.min(Integer.MAX_VALUE, budgetNanos / nanosPerChar);
+    }
+
+    // Renders differ a lot from one to the next, so no single measurement decides on its own
+    private static double smooth(double previous, double sample) {
+        return previous <= 0 ? sample : previous + SMOOTHING * (sample - previous);
+    }
+
+    // Start of the given page, moved back a char rather than splitting a surrogate pair
+    public static int pageStart(CharSequence text, int page, int pageChars) {
+        final long start = Math.min((long) page * pageChars, text.length());
+        int result = (int) start;
+        if(result > 0 && result < text.length() && Character.isLowSurrogate(text.charAt(result))) {
+            result--;
+        }
+        return result;
+    }
+
+    public static int pageCount(int chars, int pageChars) {
+        return (int) Math.max(1, ((long) chars + pageChars - 1) / pageChars);
+    }
+}
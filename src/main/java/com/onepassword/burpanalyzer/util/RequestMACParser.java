@@ -4,7 +4,6 @@ import burp.IRequestInfo;
 import com.onepassword.burpanalyzer.model.RequestMAC;
 
 import java.util.Locale;
-import java.util.stream.Collectors;
 
 public interface RequestMACParser {
     enum ParseFailure {
@@ -54,58 +53,42 @@ public interface RequestMACParser {
     }
 
     static RequestMACParser.Result parseRequestMac(IRequestInfo requestInfo) {
+        return parseRequestMac(requestInfo, HeaderIndex.of(requestInfo.getHeaders()));
+    }
+
+    static RequestMACParser.Result parseRequestMac(IRequestInfo requestInfo, HeaderIndex headers) {
         final var macVersion = RequestMAC.VersionIndicator.v1;
         final var method = requestInfo.getMethod().toUpperCase(Locale.ROOT);
         final var requestMethod = RequestMAC.RequestMethod.valueOf(method);
 
-        final var sessionIdHeaders = requestInfo.getHeaders().stream()
-                .filter(header -> header.toLowerCase().startsWith(OnePasswordHeaders.SESSION_HEADER_NAME.toLowerCase()))
-                .collect(Collectors.toSet());
-
-        if(sessionIdHeaders.size() > 1) {
+        if(headers.hasMultipleSessionIdHeaders()) {
             return new Result(ParseFailure.MULTIPLE_SESSION_MAC_HEADERS);
         }
 
-        if(sessionIdHeaders.size() == 0 || sessionIdHeaders.iterator().next() == null) {
+        if(!headers.hasSessionIdHeader()) {
             return new Result(ParseFailure.MISSING_SESSION_ID);
         }
 
-        final var sessionIdHeader = sessionIdHeaders.iterator().next();
-        final var splitSessionIdHeader = sessionIdHeader.split(":");
-
-        if(splitSessionIdHeader.length != 2) {
+        if(!headers.isSessionIdHeaderWellFormed()) {
             return new Result(ParseFailure.INVALID_SESSION_ID_HEADER);
         }
-        final var sessionId = splitSessionIdHeader[1].strip();
+        final var sessionId = headers.getSessionId().orElseThrow();
 
-        final var macHeaders = requestInfo.getHeaders().stream()
-                .filter(header -> header.toLowerCase().startsWith(OnePasswordHeaders.MAC_HEADER_NAME.toLowerCase()))
-                .collect(Collectors.toSet());
-
-        if(macHeaders.size() > 1) {
+        if(headers.hasMultipleMacHeaders()) {
             return new Result(ParseFailure.MULTIPLE_SESSION_MAC_HEADERS);
         }
 
-        if(macHeaders.size() == 0 || macHeaders.iterator().next() == null) {
+        if(!headers.hasMacHeader()) {
             return new Result(ParseFailure.MISSING_REQUEST_ID);
         }
 
-        final var macHeader = macHeaders.iterator().next();
-        final var macHeaderSplit = macHeader.split(":");
-        if(macHeaderSplit.length != 2) {
-            return new Result(ParseFailure.INVALID_MAC_HEADER);
-        }
-        final var macString = macHeaderSplit[1];
-
-        final var macStringSplit = macString.split("\\|");
-        if(macStringSplit.length != 3) {
+        if(!headers.isMacHeaderWellFormed()) {
             return new Result(ParseFailure.INVALID_MAC_HEADER);
         }
 
-        final var requestIdStr = macStringSplit[1];
         final long requestId;
         try {
-            requestId = Long.parseLong(requestIdStr);
+            requestId = Long.parseLong(headers.getRequestIdText().orElseThrow());
         } catch(NumberFormatException e) {
             return new Result(ParseFailure.INVALID_MAC_HEADER);
         }
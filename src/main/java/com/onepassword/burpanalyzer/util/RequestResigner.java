@@ -0,0 +1,80 @@
+package com.onepassword.burpanalyzer.util;
+
+import burp.IRequestInfo;
+import com.onepassword.burpanalyzer.model.RequestMAC;
+import com.onepassword.burpanalyzer.processing.RequestMACGenerateError;
+import com.onepassword.burpanalyzer.processing.Result;
+
+// Gives a request a fresh request id and a MAC signed with the session's key, so tools that send the same
+// request many times (Intruder, Scanner, Repeater) don't get rejected for reusing a request id.
+// Runs on every one of Burp's request threads at once: request ids are reserved with a compare-and-set on
+// the session's own state and signers keep a Mac per thread, so concurrent requests never wait on each other.
+public class RequestResigner {
+    private final SessionStateCache sessionStateCache;
+
+    public RequestResigner(SessionStateCache sessionStateCache) {
+        this.sessionStateCache = sessionStateCache;
+    }
+
+    public Result<byte[], RequestMACGenerateError> resign(IRequestInfo requestInfo, byte[] request) {
+        return resign(requestInfo, HeaderIndex.of(requestInfo.getHeaders()), request);
+    }
+
+    public Result<byte[], RequestMACGenerateError> resign(IRequestInfo requestInfo, HeaderIndex headers, byte[] request) {
+        final var parsed = RequestMACParser.parseRequestMac(requestInfo, headers);
+        if(!parsed.didSucceed()) {
+            return new Result<>(toGenerateError(parsed.getParseFailure()));
+        }
+        final var currentMac = parsed.getRequestMAC();
+        final var sessionId = currentMac.getSessionId();
+
+        final var sessionKey = sessionStateCache.findSessionKey(sessionId);
+        if(sessionKey.isEmpty()) {
+            return new Result<>(RequestMACGenerateError.MISSING_SESSION_KEY);
+        }
+
+        // The request's own id has been used already, so count on from it if nothing newer was observed
+        headers.getRequestId().ifPresent(requestId -> sessionStateCache.setLatestRequestId(sessionId, requestId));
+        final var requestId = sessionStateCache.reserveNextRequestId(sessionId);
+        if(requestId.isEmpty()) {
+            return new Result<>(RequestMACGenerateError.MISSING_REQUEST_ID);
+        }
+
+        final var newMac = new RequestMAC(
+                currentMac.getVersionIndicator(),
+                currentMac.getRequestMethod(),
+                sessionId,
+                requestId.get(),
+                currentMac.getHost(),
+                currentMac.getUriPath(),
+                currentMac.getQueryString()
+        );
+
+        final var header = newMac.generateRequestHeader(sessionKey.get());
+        if(!header.isOk()) {
+            return new Result<>(header.getError());
+        }
+
+        final var updated = HttpMessageSplicer.replaceHeaderValue(
+                request, requestInfo.getBodyOffset(), OnePasswordHeaders.MAC_HEADER_NAME, header.getResult());
+        if(updated.isEmpty()) {
+            return new Result<>(RequestMACGenerateError.INVALID_MAC_HEADER);
+        }
+        return new Result<>(updated.get());
+    }
+
+    private static RequestMACGenerateError toGenerateError(RequestMACParser.ParseFailure parseFailure) {
+        switch(parseFailure) {
+            case MULTIPLE_SESSION_MAC_HEADERS:
+                return RequestMACGenerateError.MULTIPLE_SESSION_MAC_HEADERS;
+            case MISSING_SESSION_ID:
+                return RequestMACGenerateError.MISSING_SESSION_ID;
+            case MISSING_REQUEST_ID:
+                return RequestMACGenerateError.MISSING_REQUEST_ID;
+            case INVALID_SESSION_ID_HEADER:
+                return RequestMACGenerateError.INVALID_SESSION_ID_HEADER;
+            default:
+                return RequestMACGenerateError.INVALID_MAC_HEADER;
+        }
+    }
+}
@@ -1,84 +1,406 @@
 package com.onepassword.burpanalyzer.util;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+import java.util.function.Predicate;
 
+// Written from Burp's proxy threads and read from every editor tab's workers.
+// Lookups never lock, and writes only lock the session's own entry so they can't race its eviction.
+// Sessions that sit idle for too long are dropped, and the least recently used ones go first once the cache is full.
 public class SessionStateCache {
-    private static final SessionStateCache instance = new SessionStateCache();
+    public static final int DEFAULT_MAX_SESSIONS = 1024;
+    public static final Duration DEFAULT_IDLE_TTL = Duration.ofDays(3);
+
+    // Limits for the extension-wide cache can be tuned when starting Burp, e.g. -Donepassword.sessions.max=4096
+    private static final SessionStateCache instance = new SessionStateCache(
+        Integer.getInteger("onepassword.sessions.max", DEFAULT_MAX_SESSIONS),
+        Duration.ofHours(Long.getLong("onepassword.sessions.idleTtlHours", DEFAULT_IDLE_TTL.toHours())),
+        System::nanoTime
+    );
 
     public static SessionStateCache getInstance() {
         return instance;
     }
 
-    private SessionStateCache() {}
+    private final ConcurrentMap<String, State> cache = new ConcurrentHashMap<>();
+    private final LongSupplier nanoClock;
+    private volatile int maxSessions;
+    private volatile long idleTtlNanos;
+
+    private volatile Consumer<String> changeListener = sessionId -> {};
+
+    private final AtomicBoolean evicting = new AtomicBoolean(false);
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
 
-    private final Map<String, State> cache = new HashMap<>();
+    public SessionStateCache(int maxSessions, Duration idleTtl, LongSupplier nanoClock) {
+        this.nanoClock = nanoClock;
+        setLimits(maxSessions, idleTtl);
+    }
+
+    public void setLimits(int maxSessions, Duration idleTtl) {
+        if(maxSessions < 1 || idleTtl.isNegative() || idleTtl.isZero()) {
+            throw new IllegalArgumentException("Session cache limits must be positive");
+        }
+        this.maxSessions = maxSessions;
+        this.idleTtlNanos = idleTtl.toNanos();
+        evictIfNeeded();
+    }
+
+    public Duration getIdleTtl() {
+        return Duration.ofNanos(idleTtlNanos);
+    }
+
+    // Told about the id of every session whose request id or key changed, e.g. to persist it.
+    // Called on the thread making the change, so it must be cheap.
+    public void setChangeListener(Consumer<String> changeListener) {
+        this.changeListener = changeListener;
+    }
 
     public Optional<Integer> findLatestRequestId(String sessionId) {
-        return Optional.ofNullable(cache.get(sessionId)).flatMap(State::getLatestRequestId);
+        return lookup(sessionId).flatMap(State::getLatestRequestId);
     }
 
     public Optional<byte[]> findSessionKey(String sessionId) {
-        return Optional.ofNullable(cache.get(sessionId)).flatMap(State::getSessionKey);
+        return lookup(sessionId).flatMap(State::getSessionKey);
     }
 
+    // Proxy messages can be observed out of order, so the latest request id only ever moves forward
     public void setLatestRequestId(String sessionId, int requestId) {
-        State state = cache.get(sessionId);
-
-        if(state == null) {
-            state = new State(requestId);
-        } else{
-            state.setLatestRequestId(requestId);
+        if(update(sessionId, state -> state.advanceLatestRequestId(requestId))) {
+            changeListener.accept(sessionId);
         }
+    }
+
+    // Hands out the next unused request id, so concurrent signers for one session never pick the same one.
+    // Empty until a request id has been observed for the session, as there is nothing to count from.
+    public Optional<Integer> reserveNextRequestId(String sessionId) {
+        return reserveRequestIds(sessionId, 1);
+    }
 
-        cache.put(sessionId, state);
+    // Reserves a block of count consecutive request ids and returns the first one
+    public Optional<Integer> reserveRequestIds(String sessionId, int count) {
+        if(count < 1) {
+            throw new IllegalArgumentException("Must reserve at least one request id");
+        }
+        final var reserved = lookup(sessionId).flatMap(state -> state.reserveRequestIds(count));
+        if(reserved.isPresent()) {
+            changeListener.accept(sessionId);
+        }
+        return reserved;
     }
 
     public void setSessionKey(String sessionId, byte[] sessionKey) {
-        State state = cache.get(sessionId);
+        if(update(sessionId, state -> state.setSessionKey(sessionKey))) {
+            changeListener.accept(sessionId);
+        }
+    }
+
+    // Current state of a session without affecting hit counts or recency, empty if it isn't cached or has expired
+    public Optional<Snapshot> snapshot(String sessionId) {
+        final long now = nanoClock.getAsLong();
+        return Optional.ofNullable(cache.get(sessionId))
+                .filter(state -> !state.isIdleLongerThan(idleTtlNanos, now))
+                .map(state -> state.snapshot(sessionId, now));
+    }
+
+    public List<Snapshot> snapshots() {
+        final long now = nanoClock.getAsLong();
+        final var snapshots = new ArrayList<Snapshot>(cache.size());
+        cache.forEach((sessionId, state) -> {
+            if(!state.isIdleLongerThan(idleTtlNanos, now)) {
+                snapshots.add(state.snapshot(sessionId, now));
+            }
+        });
+        return snapshots;
+    }
+
+    // Merges previously saved state back in. Anything observed since startup takes precedence,
+    // and the change listener is not told, as the state came from the listener in the first place.
+    // Restored sessions keep the idle time they were saved with, so they still expire on schedule.
+    public void restore(Snapshot snapshot) {
+        final long now = nanoClock.getAsLong();
+        final long idleNanos = Math.max(0, snapshot.getIdle().toNanos());
+        if(idleNanos > idleTtlNanos) {
+            return;
+        }
+
+        final var created = new AtomicBoolean(false);
+        cache.compute(snapshot.getSessionId(), (id, existing) -> {
+            var state = existing;
+            if(state == null || state.isIdleLongerThan(idleTtlNanos, now)) {
+                if(state != null) {
+                    expirations.increment();
+                }
+                created.set(true);
+                state = new State(now - idleNanos);
+            }
+
+            snapshot.getLatestRequestId().ifPresent(state::advanceLatestRequestId);
+            snapshot.getSessionKey().ifPresent(state::setSessionKeyIfAbsent);
+            return state;
+        });
+
+        if(created.get()) {
+            evictIfNeeded();
+        }
+    }
+
+    public Statistics getStatistics() {
+        long keyBytes = 0;
+        for(final var state: cache.values()) {
+            keyBytes += state.getSessionKey().map(key -> key.length).orElse(0);
+        }
+
+        return new Statistics(cache.size(), keyBytes, hits.sum(), misses.sum(), evictions.sum(), expirations.sum());
+    }
+
+    private Optional<State> lookup(String sessionId) {
+        final var state = cache.get(sessionId);
+        final long now = nanoClock.getAsLong();
 
         if(state == null) {
-            state = new State(null, sessionKey);
-        } else {
-            state.sessionKey = sessionKey;
+            misses.increment();
+            return Optional.empty();
+        }
+
+        if(state.isIdleLongerThan(idleTtlNanos, now)) {
+            if(cache.remove(sessionId, state)) {
+                expirations.increment();
+            }
+            misses.increment();
+            return Optional.empty();
         }
 
-        cache.put(sessionId, state);
+        hits.increment();
+        state.touch(now);
+        return Optional.of(state);
     }
 
-    private static class State {
-        private Integer latestRequestId;
-        private byte[] sessionKey;
+    // Writes happen while the session's entry is locked, so they can't land on a state that is being evicted.
+    // They also mark the session as used right away, which keeps an eviction that picked it earlier from dropping it.
+    private boolean update(String sessionId, Predicate<State> write) {
+        final long now = nanoClock.getAsLong();
+        final var created = new AtomicBoolean(false);
+        final var changed = new AtomicBoolean(false);
 
-        public State(Integer latestRequestId) {
-            this.latestRequestId = latestRequestId;
+        cache.compute(sessionId, (id, existing) -> {
+            var state = existing;
+            if(state == null || state.isIdleLongerThan(idleTtlNanos, now)) {
+                if(state != null) {
+                    expirations.increment();
+                }
+                created.set(true);
+                state = new State(now);
+            }
+
+            state.lastAccessNanos = now;
+            changed.set(write.test(state));
+            return state;
+        });
+
+        if(created.get()) {
+            evictIfNeeded();
         }
+        return changed.get();
+    }
 
-        public State(byte[] sessionKey) {
-            this.sessionKey = sessionKey;
+    // Runs on the thread that added a session. Only one thread evicts at a time, the others carry on,
+    // and the evicting thread goes again if sessions were added while it was busy.
+    private void evictIfNeeded() {
+        while(cache.size() > maxSessions && evicting.compareAndSet(false, true)) {
+            try {
+                evict();
+            } finally {
+                evicting.set(false);
+            }
+        }
+    }
+
+    private void evict() {
+        final long now = nanoClock.getAsLong();
+        final var candidates = new ArrayList<EvictionCandidate>(cache.size());
+
+        for(final var entry: cache.entrySet()) {
+            final var state = entry.getValue();
+            if(state.isIdleLongerThan(idleTtlNanos, now)) {
+                if(cache.remove(entry.getKey(), state)) {
+                    expirations.increment();
+                }
+            } else {
+                candidates.add(new EvictionCandidate(entry.getKey(), state));
+            }
         }
 
-        public State(Integer latestRequestId, byte[] sessionKey) {
+        // Evict down to a bit below the limit so that a steady stream of new sessions doesn't sort on every insert.
+        // Only sessions that were among the oldest when collected go: anything added since is left to the next round.
+        final int target = maxSessions - maxSessions / 10;
+        if(cache.size() > maxSessions) {
+            candidates.sort(Comparator.comparingLong(candidate -> candidate.lastAccessNanos));
+            for(int i = 0; i < candidates.size() - target && cache.size() > target; i++) {
+                if(removeIfUnused(candidates.get(i))) {
+                    evictions.increment();
+                }
+            }
+        }
+    }
+
+    // A session that was re-created or used since the candidates were collected stays
+    private boolean removeIfUnused(EvictionCandidate candidate) {
+        final var removed = new AtomicBoolean(false);
+        cache.computeIfPresent(candidate.sessionId, (id, state) -> {
+            if(state != candidate.state || state.lastAccessNanos != candidate.lastAccessNanos) {
+                return state;
+            }
+            removed.set(true);
+            return null;
+        });
+        return removed.get();
+    }
+
+    // The access time is copied, so sorting doesn't see it change under concurrent lookups
+    private static class EvictionCandidate {
+        private final String sessionId;
+        private final State state;
+        private final long lastAccessNanos;
+
+        EvictionCandidate(String sessionId, State state) {
+            this.sessionId = sessionId;
+            this.state = state;
+            this.lastAccessNanos = state.lastAccessNanos;
+        }
+    }
+
+    public static class Snapshot {
+        private final String sessionId;
+        private final Integer latestRequestId;
+        private final byte[] sessionKey;
+        private final Duration idle;
+
+        public Snapshot(String sessionId, Integer latestRequestId, byte[] sessionKey, Duration idle) {
+            this.sessionId = sessionId;
             this.latestRequestId = latestRequestId;
             this.sessionKey = sessionKey;
+            this.idle = idle;
+        }
+
+        public String getSessionId() { return sessionId; }
+        public Optional<Integer> getLatestRequestId() { return Optional.ofNullable(latestRequestId); }
+        public Optional<byte[]> getSessionKey() { return Optional.ofNullable(sessionKey); }
+        // Time since the session was last used
+        public Duration getIdle() { return idle; }
+    }
+
+    public static class Statistics {
+        private final int sessions;
+        private final long sessionKeyBytes;
+        private final long hits;
+        private final long misses;
+        private final long evictions;
+        private final long expirations;
+
+        private Statistics(int sessions, long sessionKeyBytes, long hits, long misses, long evictions, long expirations) {
+            this.sessions = sessions;
+            this.sessionKeyBytes = sessionKeyBytes;
+            this.hits = hits;
+            this.misses = misses;
+            this.evictions = evictions;
+            this.expirations = expirations;
+        }
+
+        public int getSessions() { return sessions; }
+        public long getSessionKeyBytes() { return sessionKeyBytes; }
+        public long getHits() { return hits; }
+        public long getMisses() { return misses; }
+        public long getEvictions() { return evictions; }
+        public long getExpirations() { return expirations; }
+
+        @Override
+        public String toString() {
+            return "sessions=" + sessions +
+                    ", sessionKeyBytes=" + sessionKeyBytes +
+                    ", hits=" + hits +
+                    ", misses=" + misses +
+                    ", evictions=" + evictions +
+                    ", expirations=" + expirations;
+        }
+    }
+
+    private static class State {
+        private static final int NO_REQUEST_ID = -1;
+        private static final long TOUCH_GRANULARITY_NANOS = Duration.ofSeconds(1).toNanos();
+
+        private final AtomicInteger latestRequestId = new AtomicInteger(NO_REQUEST_ID);
+        private final AtomicReference<byte[]> sessionKey = new AtomicReference<>();
+        private volatile long lastAccessNanos;
+
+        State(long now) {
+            this.lastAccessNanos = now;
+        }
+
+        void touch(long now) {
+            // Coarse on purpose: concurrent readers shouldn't all write the same field on every lookup
+            if(now - lastAccessNanos > TOUCH_GRANULARITY_NANOS) {
+                lastAccessNanos = now;
+            }
+        }
+
+        boolean isIdleLongerThan(long ttlNanos, long now) {
+            return now - lastAccessNanos > ttlNanos;
         }
 
         public Optional<Integer> getLatestRequestId() {
-            return Optional.ofNullable(latestRequestId);
+            final int requestId = latestRequestId.get();
+            return requestId == NO_REQUEST_ID ? Optional.empty() : Optional.of(requestId);
         }
 
         public Optional<byte[]> getSessionKey() {
-            return Optional.ofNullable(sessionKey);
+            return Optional.ofNullable(sessionKey.get());
         }
 
-        public void setLatestRequestId(int requestId) {
-            this.latestRequestId = requestId;
+        // Returns whether the request id moved
+        public boolean advanceLatestRequestId(int requestId) {
+            return latestRequestId.getAndAccumulate(requestId, Math::max) < requestId;
         }
 
-        public void setSessionKey(byte[] sessionKey) {
-            this.sessionKey = sessionKey;
+        public Optional<Integer> reserveRequestIds(int count) {
+            while(true) {
+                final int latest = latestRequestId.get();
+                if(latest == NO_REQUEST_ID || latest > Integer.MAX_VALUE - count) {
+                    return Optional.empty();
+                }
+
+                if(latestRequestId.compareAndSet(latest, latest + count)) {
+                    return Optional.of(latest + 1);
+                }
+            }
         }
 
+        // Returns whether the key changed
+        public boolean setSessionKey(byte[] sessionKey) {
+            return !Arrays.equals(this.sessionKey.getAndSet(sessionKey), sessionKey);
+        }
+
+        public void setSessionKeyIfAbsent(byte[] sessionKey) {
+            this.sessionKey.compareAndSet(null, sessionKey);
+        }
+
+        public Snapshot snapshot(String sessionId, long now) {
+            return new Snapshot(sessionId, getLatestRequestId().orElse(null), sessionKey.get(), Duration.ofNanos(Math.max(0, now - lastAccessNanos)));
+        }
     }
 }
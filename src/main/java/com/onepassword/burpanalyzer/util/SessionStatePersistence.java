@@ -0,0 +1,255 @@
+package com.onepassword.burpanalyzer.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+// Keeps SessionStateCache across Burp restarts in a small append-only binary file.
+//
+// File layout: MAGIC, VERSION, then records of [int length][payload] where the payload is
+//   UTF session id, int latest request id (-1 if unknown), unsigned byte key length (0 if unknown), key bytes, long last use (epoch ms)
+// A session can appear many times, the last record wins. The file is rewritten from the cache once it mostly holds outdated records.
+//
+// All file access happens on one background thread, so neither Burp's UI nor its proxy threads ever wait on disk.
+public class SessionStatePersistence {
+    private static final int MAGIC = 0x31505353; // "1PSS"
+    private static final byte VERSION = 1;
+    private static final int NO_REQUEST_ID = -1;
+    private static final int MAX_RECORD_LENGTH = 64 * 1024;
+
+    private static final long FLUSH_INTERVAL_SECONDS = 2;
+    private static final int MIN_RECORDS_BEFORE_COMPACTION = 1024;
+
+    private final Path file;
+    private final SessionStateCache cache;
+    private final Clock clock;
+    private final Consumer<String> errorLog;
+
+    private final Set<String> dirtySessions = ConcurrentHashMap.newKeySet();
+    private final ScheduledExecutorService worker;
+    private int recordsInFile = 0;
+
+    public SessionStatePersistence(Path file, SessionStateCache cache, Clock clock, Consumer<String> errorLog) {
+        this.file = file;
+        this.cache = cache;
+        this.clock = clock;
+        this.errorLog = errorLog;
+        this.worker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            final var thread = new Thread(runnable, "1Password-session-persistence");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public static boolean isEnabled() {
+        return Boolean.parseBoolean(System.getProperty("onepassword.sessions.persist", "true"));
+    }
+
+    public static Path defaultFile() {
+        final var configured = System.getProperty("onepassword.sessions.file");
+        if(configured != null) {
+            return Paths.get(configured);
+        }
+        return Paths.get(System.getProperty("user.home"), ".burp-1password-session-analyzer", "sessions.bin");
+    }
+
+    // Loads the saved state in the background and starts recording changes.
+    // Sessions observed before loading finishes are simply merged with what was saved.
+    public void start() {
+        cache.setChangeListener(dirtySessions::add);
+        worker.execute(this::load);
+        worker.scheduleWithFixedDelay(this::flush, FLUSH_INTERVAL_SECONDS, FLUSH_INTERVAL_SECONDS, TimeUnit.SECONDS);
+    }
+
+    // Writes outstanding changes and stops the background thread
+    public void stop() {
+        cache.setChangeListener(sessionId -> {});
+        worker.execute(this::flush);
+        worker.shutdown();
+        try {
+            worker.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void load() {
+        if(!Files.exists(file)) {
+            return;
+        }
+
+        // Later records for a session replace earlier ones, e.g. after a wrong session key was corrected
+        final var latest = new LinkedHashMap<String, SessionStateCache.Snapshot>();
+
+        try(final var in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if(in.readInt() != MAGIC || in.readByte() != VERSION) {
+                errorLog.accept("Ignoring saved 1Password session state in unknown format: " + file);
+                return;
+            }
+
+            while(true) {
+                final int length;
+                try {
+                    length = in.readInt();
+                } catch(EOFException e) {
+                    break;
+                }
+
+                if(length <= 0 || length > MAX_RECORD_LENGTH) {
+                    errorLog.accept("Saved 1Password session state is corrupt, ignoring the rest of " + file);
+                    break;
+                }
+
+                final var payload = new byte[length];
+                try {
+                    in.readFully(payload);
+                } catch(EOFException e) {
+                    break; // Burp was stopped halfway through writing the last record
+                }
+                recordsInFile++;
+
+                final var snapshot = readRecord(payload);
+                latest.put(snapshot.getSessionId(), snapshot);
+            }
+        } catch(IOException e) {
+            errorLog.accept("Failed to load saved 1Password session state: " + e.getMessage());
+        }
+
+        // Sessions that would have expired had Burp kept running are left out by the cache
+        latest.values().forEach(cache::restore);
+    }
+
+    private SessionStateCache.Snapshot readRecord(byte[] payload) throws IOException {
+        final var record = new DataInputStream(new ByteArrayInputStream(payload));
+        final var sessionId = record.readUTF();
+        final int requestId = record.readInt();
+        final int keyLength = record.readUnsignedByte();
+        final byte[] sessionKey = keyLength > 0 ? record.readNBytes(keyLength) : null;
+        final long lastUsed = record.readLong();
+
+        final var idle = Duration.ofMillis(Math.max(0, clock.millis() - lastUsed));
+        return new SessionStateCache.Snapshot(sessionId, requestId == NO_REQUEST_ID ? null : requestId, sessionKey, idle);
+    }
+
+    private void flush() {
+        if(dirtySessions.isEmpty()) {
+            return;
+        }
+
+        try {
+            final int liveSessions = cache.getStatistics().getSessions();
+            if(recordsInFile + dirtySessions.size() > Math.max(MIN_RECORDS_BEFORE_COMPACTION, 4 * liveSessions)) {
+                compact();
+            } else {
+                append();
+            }
+        } catch(IOException e) {
+            errorLog.accept("Failed to save 1Password session state: " + e.getMessage());
+        }
+    }
+
+    private void append() throws IOException {
+        final boolean isNew = !Files.exists(file);
+        if(isNew) {
+            createPrivateFile(file);
+        }
+
+        try(final var out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file, StandardOpenOption.APPEND)))) {
+            if(isNew) {
+                writeHeader(out);
+            }
+
+            final var iterator = dirtySessions.iterator();
+            while(iterator.hasNext()) {
+                final var sessionId = iterator.next();
+                iterator.remove();
+
+                final var snapshot = cache.snapshot(sessionId);
+                if(snapshot.isPresent()) {
+                    writeRecord(out, snapshot.get());
+                    recordsInFile++;
+                }
+            }
+        }
+    }
+
+    // Rewrites the file with one record per cached session, replacing it atomically
+    private void compact() throws IOException {
+        dirtySessions.clear();
+
+        final var temp = file.resolveSibling(file.getFileName() + ".tmp");
+        Files.deleteIfExists(temp);
+        createPrivateFile(temp);
+
+        int records = 0;
+        try(final var out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp, StandardOpenOption.TRUNCATE_EXISTING)))) {
+            writeHeader(out);
+            for(final var snapshot: cache.snapshots()) {
+                writeRecord(out, snapshot);
+                records++;
+            }
+        }
+
+        try {
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch(AtomicMoveNotSupportedException e) {
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+        recordsInFile = records;
+    }
+
+    private static void writeHeader(DataOutputStream out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+    }
+
+    private void writeRecord(DataOutputStream out, SessionStateCache.Snapshot snapshot) throws IOException {
+        final var sessionKey = snapshot.getSessionKey().filter(key -> key.length <= 255).orElse(new byte[0]);
+
+        final var payload = new ByteArrayOutputStream(64);
+        final var record = new DataOutputStream(payload);
+        record.writeUTF(snapshot.getSessionId());
+        record.writeInt(snapshot.getLatestRequestId().orElse(NO_REQUEST_ID));
+        record.writeByte(sessionKey.length);
+        record.write(sessionKey);
+        record.writeLong(clock.millis() - snapshot.getIdle().toMillis());
+
+        out.writeInt(payload.size());
+        payload.writeTo(out);
+    }
+
+    // Session keys are as good as the account password for the session, so only the current user may read them
+    private static void createPrivateFile(Path path) throws IOException {
+        final var directory = path.toAbsolutePath().getParent();
+        if(directory != null) {
+            Files.createDirectories(directory);
+        }
+        if(FileSystems.getDefault().supportedFileAttributeViews().contains("posix")) {
+            Files.createFile(path, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")));
+        } else {
+            Files.createFile(path);
+        }
+    }
+}
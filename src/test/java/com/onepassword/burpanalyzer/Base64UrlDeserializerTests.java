@@ -0,0 +1,80 @@
+package com.onepassword.burpanalyzer;
+
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.onepassword.burpanalyzer.util.Base64UrlDeserializer;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Base64;
+import java.util.Random;
+
+public class Base64UrlDeserializerTests {
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    public static class Holder {
+        @JsonDeserialize(using=Base64UrlDeserializer.class)
+        public byte[] value;
+    }
+
+    private byte[] deserialize(String base64) throws IOException {
+        return mapper.readValue("{\"value\":\"" + base64 + "\"}", Holder.class).value;
+    }
+
+    // What the JDK decoder makes of the input, null if it rejects it
+    private static byte[] jdkDecode(String base64) {
+        try {
+            return Base64.getUrlDecoder().decode(base64);
+        } catch(IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    @Test
+    public void matchesJdkDecoderOnRandomInput() throws IOException {
+        var random = new Random(3);
+        var characters = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_=+/";
+
+        for(int i = 0; i < 20000; i++) {
+            var builder = new StringBuilder();
+            var length = 1 + random.nextInt(12);
+            for(int j = 0; j < length; j++) {
+                // Mostly valid characters, so that plenty of inputs decode successfully
+                var bound = random.nextInt(10) == 0 ? characters.length() : 64;
+                builder.append(characters.charAt(random.nextInt(bound)));
+            }
+            if(random.nextBoolean()) {
+                builder.append(random.nextBoolean() ? "=" : "==");
+            }
+
+            var input = builder.toString();
+            var expected = jdkDecode(input);
+            if(expected == null) {
+                try {
+                    deserialize(input);
+                    Assert.fail("Must reject " + input);
+                } catch(JsonMappingException expectedFailure) {
+                    // Rejected like the JDK decoder
+                }
+            } else {
+                Assert.assertArrayEquals(input, expected, deserialize(input));
+            }
+        }
+    }
+
+    @Test
+    public void decodesLargePayloads() throws IOException {
+        var input = new byte[3 * 1024 * 1024 + 2];
+        new Random(5).nextBytes(input);
+
+        Assert.assertArrayEquals(input, deserialize(Base64.getUrlEncoder().withoutPadding().encodeToString(input)));
+        Assert.assertArrayEquals(input, deserialize(Base64.getUrlEncoder().encodeToString(input)));
+    }
+
+    @Test(expected = JsonMappingException.class)
+    public void rejectsEmptyString() throws IOException {
+        deserialize("");
+    }
+}
@@ -0,0 +1,45 @@
+package com.onepassword.burpanalyzer;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.onepassword.burpanalyzer.util.Base64UrlSerializer;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Base64;
+import java.util.Random;
+
+public class Base64UrlSerializerTests {
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    public static class Holder {
+        @JsonSerialize(using=Base64UrlSerializer.class)
+        public byte[] value;
+
+        Holder(byte[] value) {
+            this.value = value;
+        }
+    }
+
+    @Test
+    public void matchesJdkEncoderForAllRemainders() throws JsonProcessingException {
+        var random = new Random(42);
+        for(int length = 0; length < 100; length++) {
+            var input = new byte[length];
+            random.nextBytes(input);
+
+            var expected = "{\"value\":\"" + Base64.getUrlEncoder().withoutPadding().encodeToString(input) + "\"}";
+            Assert.assertEquals("Length " + length, expected, mapper.writeValueAsString(new Holder(input)));
+        }
+    }
+
+    @Test
+    public void encodesLargePayloads() throws JsonProcessingException {
+        var input = new byte[5 * 1024 * 1024 + 1];
+        new Random(7).nextBytes(input);
+
+        var json = mapper.readTree(mapper.writeValueAsString(new Holder(input)));
+        Assert.assertEquals(Base64.getUrlEncoder().withoutPadding().encodeToString(input), json.get("value").asText());
+    }
+}
@@ -0,0 +1,103 @@
+package com.onepassword.burpanalyzer;
+
+import com.onepassword.burpanalyzer.model.DecryptedPayload;
+import com.onepassword.burpanalyzer.model.EncryptedMessage;
+import com.onepassword.burpanalyzer.processing.BatchDecryptor;
+import com.onepassword.burpanalyzer.processing.DecryptionError;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class BatchDecryptorTests {
+    private final BatchDecryptor decryptor = BatchDecryptor.getInstance();
+
+    private final String keyIdentifier = "YKQRP2M3HZFPZDNXTHQBYFPB5M";
+    private final byte[] sessionKey = Base64.getUrlDecoder().decode("6fsZq-Md2jvAM7Bk8qLv0z59y68np5IxLK4RLgI_zog");
+    private final byte[] iv = Base64.getUrlDecoder().decode("tYENu1VjK9bH7Ppn");
+
+    private EncryptedMessage encrypt(String keyIdentifier, String plaintext) {
+        return new DecryptedPayload(plaintext.getBytes(StandardCharsets.UTF_8)).encrypt(keyIdentifier, iv, sessionKey).getResult();
+    }
+
+    @Test
+    public void resultsKeepInputOrder() {
+        var messages = new ArrayList<EncryptedMessage>();
+        for(int i = 0; i < 200; i++) {
+            messages.add(encrypt(keyIdentifier, "{\"index\":" + i + "}"));
+        }
+
+        var results = decryptor.decryptAll(messages, kid -> Optional.of(sessionKey));
+
+        Assert.assertEquals(messages.size(), results.size());
+        for(int i = 0; i < results.size(); i++) {
+            Assert.assertTrue("Message " + i + " must decrypt", results.get(i).isOk());
+            Assert.assertEquals("{\"index\":" + i + "}", new String(results.get(i).getResult().getBody(), StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    public void errorsArePerMessage() {
+        var wrongKey = sessionKey.clone();
+        wrongKey[0] ^= 1;
+        var keys = Map.of(keyIdentifier, sessionKey, "WRONGKEY", wrongKey);
+
+        var messages = List.of(
+                encrypt(keyIdentifier, "first"),
+                encrypt("UNKNOWN", "second"),
+                encrypt("WRONGKEY", "third"),
+                EncryptedMessage.empty(),
+                encrypt(keyIdentifier, "fifth"));
+
+        var results = decryptor.decryptAll(messages, kid -> Optional.ofNullable(keys.get(kid)));
+
+        Assert.assertEquals(new DecryptedPayload("first".getBytes(StandardCharsets.UTF_8)), results.get(0).getResult());
+        Assert.assertEquals(DecryptionError.MISSING_SESSION_KEY, results.get(1).getError());
+        Assert.assertEquals(DecryptionError.INVALID_SESSION_KEY, results.get(2).getError());
+        Assert.assertEquals(new DecryptedPayload(new byte[0]), results.get(3).getResult());
+        Assert.assertEquals(new DecryptedPayload("fifth".getBytes(StandardCharsets.UTF_8)), results.get(4).getResult());
+    }
+
+    @Test
+    public void resolverIsAskedOncePerKeyIdentifier() {
+        var messages = new ArrayList<EncryptedMessage>();
+        for(int i = 0; i < 50; i++) {
+            messages.add(encrypt(i % 2 == 0 ? keyIdentifier : "UNKNOWN", "message"));
+        }
+
+        var lookups = new AtomicInteger();
+        decryptor.decryptAll(messages, kid -> {
+            lookups.incrementAndGet();
+            return kid.equals(keyIdentifier) ? Optional.of(sessionKey) : Optional.empty();
+        });
+
+        Assert.assertEquals(2, lookups.get());
+    }
+
+    @Test
+    public void malformedMessageOnlyFailsItself() {
+        var good = encrypt(keyIdentifier, "fine");
+        var messages = new ArrayList<EncryptedMessage>();
+        for(int i = 0; i < 20; i++) {
+            messages.add(good);
+        }
+        messages.set(7, new EncryptedMessage(keyIdentifier, EncryptedMessage.Encryption.AES256_GCM, EncryptedMessage.ContentType.B5_JWK_JSON, null, new byte[32]));
+        messages.set(13, new EncryptedMessage(keyIdentifier, EncryptedMessage.Encryption.AES256_GCM, EncryptedMessage.ContentType.B5_JWK_JSON, iv, null));
+
+        var results = decryptor.decryptAll(messages, kid -> Optional.of(sessionKey));
+
+        Assert.assertEquals(DecryptionError.MISSING_FIELD, results.get(7).getError());
+        Assert.assertEquals(DecryptionError.MISSING_FIELD, results.get(13).getError());
+        for(int i = 0; i < results.size(); i++) {
+            if(i != 7 && i != 13) {
+                Assert.assertEquals(new DecryptedPayload("fine".getBytes(StandardCharsets.UTF_8)), results.get(i).getResult());
+            }
+        }
+    }
+}
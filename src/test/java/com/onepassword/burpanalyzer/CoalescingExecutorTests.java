@@ -0,0 +1,136 @@
+package com.onepassword.burpanalyzer;
+
+import com.onepassword.burpanalyzer.util.CoalescingExecutor;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class CoalescingExecutorTests {
+    @Test
+    public void onlyLatestPendingTaskRuns() throws InterruptedException {
+        var lane = CoalescingExecutor.getInstance().newLane();
+        var ran = new CopyOnWriteArrayList<String>();
+        var firstStarted = new CountDownLatch(1);
+        var releaseFirst = new CountDownLatch(1);
+        var lastDone = new CountDownLatch(1);
+
+        lane.submit(generation -> {
+            firstStarted.countDown();
+            try {
+                releaseFirst.await();
+            } catch (InterruptedException ignored) { }
+            ran.add("first");
+        });
+        Assert.assertTrue(firstStarted.await(5, TimeUnit.SECONDS));
+
+        // These queue up behind the running task, and all but the last one are superseded
+        lane.submit(generation -> ran.add("second"));
+        lane.submit(generation -> ran.add("third"));
+        lane.submit(generation -> {
+            ran.add("fourth");
+            lastDone.countDown();
+        });
+
+        releaseFirst.countDown();
+        Assert.assertTrue(lastDone.await(5, TimeUnit.SECONDS));
+        Assert.assertEquals(List.of("first", "fourth"), ran);
+    }
+
+    @Test
+    public void laneKeepsWorkingAfterFailingTask() throws InterruptedException {
+        var lane = CoalescingExecutor.getInstance().newLane();
+        var done = new CountDownLatch(1);
+
+        lane.submit(generation -> { throw new IllegalStateException("expected in test"); });
+        Thread.sleep(50);
+        lane.submit(generation -> done.countDown());
+
+        Assert.assertTrue("Lane must accept work after a task failed", done.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void runningTaskSeesItWasSuperseded() throws InterruptedException {
+        var lane = CoalescingExecutor.getInstance().newLane();
+        var started = new CountDownLatch(1);
+        var superseded = new CountDownLatch(1);
+        var done = new CountDownLatch(1);
+        var staleAtEnd = new AtomicBoolean(false);
+
+        lane.submit(generation -> {
+            started.countDown();
+            try {
+                superseded.await();
+            } catch (InterruptedException ignored) { }
+            staleAtEnd.set(generation.isStale());
+            done.countDown();
+        });
+        Assert.assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        lane.invalidate();
+        superseded.countDown();
+
+        Assert.assertTrue(done.await(5, TimeUnit.SECONDS));
+        Assert.assertTrue("Invalidating the lane must make running work stale", staleAtEnd.get());
+    }
+
+    @Test
+    public void newerWorkOnAnotherLaneOfTheGroupMakesWorkStale() throws InterruptedException {
+        var group = CoalescingExecutor.getInstance().newLaneGroup();
+        var slow = group.newLane();
+        var fast = group.newLane();
+        var started = new CountDownLatch(1);
+        var fastDone = new CountDownLatch(1);
+        var done = new CountDownLatch(1);
+        var staleAtEnd = new AtomicBoolean(false);
+        var fastWasCurrent = new AtomicBoolean(false);
+
+        slow.submit(generation -> {
+            started.countDown();
+            try {
+                fastDone.await();
+            } catch (InterruptedException ignored) { }
+            staleAtEnd.set(generation.isStale());
+            done.countDown();
+        });
+        Assert.assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        fast.submit(generation -> {
+            fastWasCurrent.set(generation.isCurrent());
+            fastDone.countDown();
+        });
+
+        Assert.assertTrue(done.await(5, TimeUnit.SECONDS));
+        Assert.assertTrue("The newer submission must be current", fastWasCurrent.get());
+        Assert.assertTrue("Older work must be stale once another lane of the group got newer work", staleAtEnd.get());
+    }
+
+    @Test
+    public void separateGroupsDontAffectEachOther() throws InterruptedException {
+        var first = CoalescingExecutor.getInstance().newLaneGroup().newLane();
+        var second = CoalescingExecutor.getInstance().newLaneGroup().newLane();
+        var started = new CountDownLatch(1);
+        var release = new CountDownLatch(1);
+        var done = new CountDownLatch(1);
+        var currentAtEnd = new AtomicBoolean(false);
+
+        first.submit(generation -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException ignored) { }
+            currentAtEnd.set(generation.isCurrent());
+            done.countDown();
+        });
+        Assert.assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        second.submit(generation -> release.countDown());
+
+        Assert.assertTrue(done.await(5, TimeUnit.SECONDS));
+        Assert.assertTrue("Work for another tab must not make this tab's work stale", currentAtEnd.get());
+    }
+}
@@ -0,0 +1,88 @@
+package com.onepassword.burpanalyzer;
+
+import com.onepassword.burpanalyzer.processing.CryptoEngine;
+import com.onepassword.burpanalyzer.processing.DecryptionError;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Random;
+
+public class CryptoEngineTests {
+    private final CryptoEngine engine = CryptoEngine.getInstance();
+
+    private final byte[] sessionKey = Base64.getUrlDecoder().decode("6fsZq-Md2jvAM7Bk8qLv0z59y68np5IxLK4RLgI_zog");
+    private final byte[] iv = Base64.getUrlDecoder().decode("tYENu1VjK9bH7Ppn");
+    private final byte[] plaintext = "{\"users\":[],\"totalCount\":0}".getBytes(StandardCharsets.UTF_8);
+    private final byte[] ciphertext = Base64.getUrlDecoder().decode("ajyndPzqt8mnc2R4x_ZGJSmRY6qqbOKKiEljvvNce1xtHNmc_jdbm5oBbQ");
+
+    @Test
+    public void repeatedEncryptionWithSameIv() {
+        // Editing a payload re-encrypts it under its original IV on every keystroke
+        for(int i = 0; i < 3; i++) {
+            var result = engine.encrypt(sessionKey, iv, plaintext);
+            Assert.assertTrue("Encryption must succeed on attempt " + i, result.isOk());
+            Assert.assertArrayEquals("Ciphertext must match on attempt " + i, ciphertext, result.getResult());
+        }
+    }
+
+    @Test
+    public void repeatedDecryption() {
+        for(int i = 0; i < 3; i++) {
+            var result = engine.decrypt(sessionKey, iv, ciphertext);
+            Assert.assertTrue("Decryption must succeed on attempt " + i, result.isOk());
+            Assert.assertArrayEquals("Plaintext must match on attempt " + i, plaintext, result.getResult());
+        }
+    }
+
+    @Test
+    public void decryptionWithWrongKeyFails() {
+        var wrongKey = sessionKey.clone();
+        wrongKey[0] ^= 1;
+
+        var result = engine.decrypt(wrongKey, iv, ciphertext);
+        Assert.assertFalse("Decryption with the wrong key must fail", result.isOk());
+        Assert.assertEquals(DecryptionError.INVALID_SESSION_KEY, result.getError());
+
+        // A failed attempt must not poison the cached cipher for the next message
+        Assert.assertTrue("Decryption with the right key must still work", engine.decrypt(sessionKey, iv, ciphertext).isOk());
+    }
+
+    @Test
+    public void streamingDecryptionMatchesInMemory() {
+        var output = new ByteArrayOutputStream();
+        var result = engine.decrypt(sessionKey, iv, new ByteArrayInputStream(ciphertext), output);
+        Assert.assertTrue("Decryption must succeed", result.isOk());
+        Assert.assertEquals(plaintext.length, (long) result.getResult());
+        Assert.assertArrayEquals(plaintext, output.toByteArray());
+    }
+
+    @Test
+    public void streamingDecryptionOfLargePayload() {
+        // Spans many chunks, and doesn't end on a block boundary
+        var large = new byte[1024 * 1024 + 7];
+        new Random(17).nextBytes(large);
+        var encrypted = engine.encrypt(sessionKey, iv, large).getResult();
+
+        var output = new ByteArrayOutputStream();
+        var result = engine.decrypt(sessionKey, iv, new ByteArrayInputStream(encrypted), output);
+        Assert.assertTrue("Decryption must succeed", result.isOk());
+        Assert.assertArrayEquals(large, output.toByteArray());
+    }
+
+    @Test
+    public void streamingDecryptionWithTamperedTagFails() {
+        var tampered = ciphertext.clone();
+        tampered[tampered.length - 1] ^= 1;
+
+        var result = engine.decrypt(sessionKey, iv, new ByteArrayInputStream(tampered), new ByteArrayOutputStream());
+        Assert.assertFalse("Decryption of a tampered message must fail", result.isOk());
+        Assert.assertEquals(DecryptionError.INVALID_SESSION_KEY, result.getError());
+
+        var tooShort = new ByteArrayInputStream(new byte[15]);
+        Assert.assertEquals(DecryptionError.INVALID_SESSION_KEY, engine.decrypt(sessionKey, iv, tooShort, new ByteArrayOutputStream()).getError());
+    }
+}
@@ -0,0 +1,100 @@
+package com.onepassword.burpanalyzer;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.onepassword.burpanalyzer.model.DecryptedPayload;
+import com.onepassword.burpanalyzer.model.EncryptedMessage;
+import com.onepassword.burpanalyzer.model.EncryptedMessageReader;
+import com.onepassword.burpanalyzer.processing.DecryptedPayloadCache;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+public class DecryptedPayloadCacheTests {
+    private final byte[] sessionKey = Base64.getUrlDecoder().decode("6fsZq-Md2jvAM7Bk8qLv0z59y68np5IxLK4RLgI_zog");
+    private final byte[] iv = Base64.getUrlDecoder().decode("tYENu1VjK9bH7Ppn");
+
+    private EncryptedMessage encrypt(String plaintext) {
+        return new DecryptedPayload(plaintext.getBytes(StandardCharsets.UTF_8)).encrypt("YKQRP2M3HZFPZDNXTHQBYFPB5M", iv, sessionKey).getResult();
+    }
+
+    private DecryptedPayloadCache.Key keyFor(EncryptedMessage message, byte[] sessionKey) {
+        return DecryptedPayloadCache.Key.of(message, sessionKey).orElseThrow();
+    }
+
+    @Test
+    public void findsWhatWasPut() {
+        var cache = new DecryptedPayloadCache(1024 * 1024);
+        var message = encrypt("{\"a\":1}");
+
+        Assert.assertTrue(cache.find(keyFor(message, sessionKey)).isEmpty());
+        cache.put(keyFor(message, sessionKey), new DecryptedPayloadCache.Entry("{\"a\":1}", "{\n  \"a\" : 1\n}"));
+
+        var found = cache.find(keyFor(message, sessionKey));
+        Assert.assertTrue("Payload must be cached", found.isPresent());
+        Assert.assertEquals("{\"a\":1}", found.get().getText());
+        Assert.assertEquals("{\n  \"a\" : 1\n}", found.get().getDisplayText());
+
+        var statistics = cache.getStatistics();
+        Assert.assertEquals(1, statistics.getHits());
+        Assert.assertEquals(1, statistics.getMisses());
+        Assert.assertEquals(1, statistics.getPayloads());
+    }
+
+    @Test
+    public void keyDependsOnCiphertextAndSessionKey() {
+        var cache = new DecryptedPayloadCache(1024 * 1024);
+        var message = encrypt("first");
+        cache.put(keyFor(message, sessionKey), new DecryptedPayloadCache.Entry("first", "first"));
+
+        var wrongKey = sessionKey.clone();
+        wrongKey[0] ^= 1;
+        Assert.assertTrue("A wrong session key must not find the plaintext", cache.find(keyFor(message, wrongKey)).isEmpty());
+        Assert.assertTrue("Other ciphertext must not match", cache.find(keyFor(encrypt("second"), sessionKey)).isEmpty());
+        Assert.assertTrue("Empty messages have no key", DecryptedPayloadCache.Key.of(EncryptedMessage.empty(), sessionKey).isEmpty());
+    }
+
+    @Test
+    public void lazilyReadMessagesShareKeysWithDecodedOnes() throws Exception {
+        var mapper = new ObjectMapper();
+        var message = encrypt("shared");
+        var json = mapper.writeValueAsBytes(message);
+        var read = EncryptedMessageReader.read(mapper.getFactory(), json, 0, json.length).getResult();
+
+        Assert.assertEquals(keyFor(message, sessionKey), keyFor(read, sessionKey));
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsedBeyondSizeBound() {
+        var text = "x".repeat(1000);
+        // Room for two entries of this size, but not three
+        var cache = new DecryptedPayloadCache(2 * (text.length() * Character.BYTES + 256) + 100);
+
+        var first = keyFor(encrypt("1"), sessionKey);
+        var second = keyFor(encrypt("2"), sessionKey);
+        var third = keyFor(encrypt("3"), sessionKey);
+
+        cache.put(first, new DecryptedPayloadCache.Entry(text, text));
+        cache.put(second, new DecryptedPayloadCache.Entry(text, text));
+        cache.find(first); // Now the second one is the least recently used
+        cache.put(third, new DecryptedPayloadCache.Entry(text, text));
+
+        Assert.assertTrue(cache.find(first).isPresent());
+        Assert.assertTrue(cache.find(second).isEmpty());
+        Assert.assertTrue(cache.find(third).isPresent());
+        Assert.assertEquals(1, cache.getStatistics().getEvictions());
+        Assert.assertTrue(cache.getStatistics().getBytes() <= 2 * (text.length() * Character.BYTES + 256) + 100);
+    }
+
+    @Test
+    public void skipsEntriesLargerThanTheCache() {
+        var cache = new DecryptedPayloadCache(1000);
+        var key = keyFor(encrypt("big"), sessionKey);
+
+        cache.put(key, new DecryptedPayloadCache.Entry("x".repeat(1000), "x".repeat(1000)));
+
+        Assert.assertTrue(cache.find(key).isEmpty());
+        Assert.assertEquals(0, cache.getStatistics().getBytes());
+    }
+}
@@ -0,0 +1,72 @@
+package com.onepassword.burpanalyzer;
+
+import com.onepassword.burpanalyzer.util.DocumentPatch;
+import org.junit.Assert;
+import org.junit.Test;
+
+import javax.swing.text.BadLocationException;
+import javax.swing.text.PlainDocument;
+import java.util.Random;
+
+public class DocumentPatchTests {
+    private static String apply(String current, String updated) throws BadLocationException {
+        var document = new PlainDocument();
+        document.insertString(0, current, null);
+        DocumentPatch.between(current, updated).applyTo(document);
+        return document.getText(0, document.getLength());
+    }
+
+    @Test
+    public void onlyCoversTheChangedRange() {
+        var patch = DocumentPatch.between("{\"a\":1,\"b\":2}", "{\"a\":1,\"b\":23}");
+
+        Assert.assertEquals(12, patch.getOffset());
+        Assert.assertEquals(0, patch.getRemovedLength());
+        Assert.assertEquals("3", patch.getInserted());
+        Assert.assertTrue(DocumentPatch.between("same", "same").isEmpty());
+    }
+
+    @Test
+    public void handlesRepeatedCharacters() throws BadLocationException {
+        var patch = DocumentPatch.between("aa", "aaa");
+        Assert.assertEquals(1, patch.getInserted().length());
+
+        Assert.assertEquals("aaa", apply("aa", "aaa"));
+        Assert.assertEquals("a", apply("aaa", "a"));
+        Assert.assertEquals("", apply("abc", ""));
+        Assert.assertEquals("abc", apply("", "abc"));
+    }
+
+    @Test
+    public void keepsSurrogatePairsTogether() {
+        // Both emoji share their high surrogate, so a naive prefix would end between the two halves
+        var patch = DocumentPatch.between("x😀y", "x😁y");
+
+        Assert.assertEquals(1, patch.getOffset());
+        Assert.assertEquals(2, patch.getRemovedLength());
+        Assert.assertEquals("😁", patch.getInserted());
+    }
+
+    @Test
+    public void randomEditsProduceTheNewText() throws BadLocationException {
+        var random = new Random(21);
+        for(int i = 0; i < 500; i++) {
+            var current = randomText(random, random.nextInt(40));
+            var builder = new StringBuilder(current);
+            var start = builder.length() == 0 ? 0 : random.nextInt(builder.length());
+            var end = start + random.nextInt(builder.length() - start + 1);
+            builder.replace(start, end, randomText(random, random.nextInt(5)));
+            var updated = builder.toString();
+
+            Assert.assertEquals(updated, apply(current, updated));
+        }
+    }
+
+    private static String randomText(Random random, int length) {
+        var builder = new StringBuilder();
+        for(int i = 0; i < length; i++) {
+            builder.append("ab{}\n".charAt(random.nextInt(5)));
+        }
+        return builder.toString();
+    }
+}
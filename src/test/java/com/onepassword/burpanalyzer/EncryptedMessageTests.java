@@ -4,10 +4,20 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.onepassword.burpanalyzer.model.DecryptedPayload;
 import com.onepassword.burpanalyzer.model.EncryptedMessage;
+import com.onepassword.burpanalyzer.model.EncryptedMessageReader;
+import com.onepassword.burpanalyzer.processing.CryptoEngine;
+import com.onepassword.burpanalyzer.processing.DecryptionError;
+import com.onepassword.burpanalyzer.processing.EncryptedMessageProcessingError;
 import org.junit.Assert;
 import org.junit.Test;
 
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
 import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.Base64;
 
 public class EncryptedMessageTests {
@@ -167,4 +177,148 @@ public class EncryptedMessageTests {
 
         Assert.assertEquals("Marshalled JSON should match expected JSON", expectedJson, marshalled);
     }
+
+    @Test
+    public void streamingReadMatchesMapper() throws JsonProcessingException {
+        var jsonInput = "{" +
+            "\"kid\":\"YKQRP2M3HZFPZDNXTHQBYFPB5M\"," +
+            "\"enc\":\"A256GCM\"," +
+            "\"cty\":\"b5+jwk+json\"," +
+            "\"iv\":\"tYENu1VjK9bH7Ppn\"," +
+            "\"data\":\"ajyndPzqt8mnc2R4x_ZGJSmRY6qqbOKKiEljvvNce1xtHNmc_jdbm5oBbQ\"" +
+        "}";
+        var bytes = ("HTTP/1.1 200 OK\r\n\r\n" + jsonInput).getBytes(StandardCharsets.UTF_8);
+        var bodyOffset = bytes.length - jsonInput.length();
+
+        var streamed = EncryptedMessageReader.read(mapper.getFactory(), bytes, bodyOffset, bytes.length - bodyOffset);
+
+        Assert.assertTrue("Message must be read", streamed.isOk());
+        Assert.assertEquals(mapper.readValue(jsonInput, EncryptedMessage.class), streamed.getResult());
+
+        var sessionKey = Base64.getUrlDecoder().decode("6fsZq-Md2jvAM7Bk8qLv0z59y68np5IxLK4RLgI_zog");
+        var decrypted = streamed.getResult().decrypt(sessionKey);
+        Assert.assertTrue("Streamed message must decrypt", decrypted.isOk());
+        Assert.assertEquals(new DecryptedPayload("{\"users\":[],\"totalCount\":0}".getBytes(StandardCharsets.UTF_8)), decrypted.getResult());
+    }
+
+    @Test
+    public void streamingReadRejectsTruncatedData() {
+        var jsonInput = "{\"kid\":\"YKQRP2M3HZFPZDNXTHQBYFPB5M\",\"enc\":\"A256GCM\",\"cty\":\"b5+jwk+json\",\"iv\":\"tYENu1VjK9bH7Ppn\",\"data\":\"ajynd";
+        var bytes = jsonInput.getBytes(StandardCharsets.UTF_8);
+
+        var streamed = EncryptedMessageReader.read(mapper.getFactory(), bytes, 0, bytes.length);
+
+        Assert.assertEquals(EncryptedMessageProcessingError.INVALID_BODY, streamed.getError());
+    }
+
+    @Test
+    public void streamingReadRejectsUnknownFieldsAfterData() {
+        var jsonInput = "{\"kid\":\"YKQRP2M3HZFPZDNXTHQBYFPB5M\",\"enc\":\"A256GCM\",\"cty\":\"b5+jwk+json\",\"iv\":\"tYENu1VjK9bH7Ppn\",\"data\":\"ajynd\",\"extra\":\"x\"}";
+        var bytes = jsonInput.getBytes(StandardCharsets.UTF_8);
+
+        var streamed = EncryptedMessageReader.read(mapper.getFactory(), bytes, 0, bytes.length);
+
+        Assert.assertEquals(EncryptedMessageProcessingError.INVALID_BODY, streamed.getError());
+    }
+
+    @Test
+    public void streamingReadRejectsMissingData() {
+        var jsonInput = "{\"kid\":\"YKQRP2M3HZFPZDNXTHQBYFPB5M\",\"enc\":\"A256GCM\",\"cty\":\"b5+jwk+json\",\"iv\":\"tYENu1VjK9bH7Ppn\"}";
+        var bytes = jsonInput.getBytes(StandardCharsets.UTF_8);
+
+        var streamed = EncryptedMessageReader.read(mapper.getFactory(), bytes, 0, bytes.length);
+
+        Assert.assertEquals(EncryptedMessageProcessingError.INVALID_BODY, streamed.getError());
+    }
+
+    @Test
+    public void streamingReadRejectsUnknownEnc() {
+        var bytes = "{\"kid\":\"GBOJATMN3FGLNPXPBMMQXS6XH4\",\"enc\":\"3DES\"}".getBytes(StandardCharsets.UTF_8);
+
+        var streamed = EncryptedMessageReader.read(mapper.getFactory(), bytes, 0, bytes.length);
+
+        Assert.assertEquals(EncryptedMessageProcessingError.INVALID_BODY, streamed.getError());
+    }
+
+    @Test
+    public void largeStreamingReadDecryptsInChunks() {
+        var sessionKey = Base64.getUrlDecoder().decode("6fsZq-Md2jvAM7Bk8qLv0z59y68np5IxLK4RLgI_zog");
+        var iv = Base64.getUrlDecoder().decode("tYENu1VjK9bH7Ppn");
+        var plaintext = new byte[2 * 1024 * 1024 + 1];
+        Arrays.fill(plaintext, (byte) 'x');
+        var ciphertext = CryptoEngine.getInstance().encrypt(sessionKey, iv, plaintext).getResult();
+
+        var bytes = ("{\"kid\":\"YKQRP2M3HZFPZDNXTHQBYFPB5M\",\"enc\":\"A256GCM\",\"cty\":\"b5+jwk+json\",\"iv\":\"tYENu1VjK9bH7Ppn\"," +
+                "\"data\":\"" + Base64.getUrlEncoder().withoutPadding().encodeToString(ciphertext) + "\"}").getBytes(StandardCharsets.UTF_8);
+        var streamed = EncryptedMessageReader.read(mapper.getFactory(), bytes, 0, bytes.length).getResult();
+
+        var decrypted = streamed.decrypt(sessionKey);
+        Assert.assertTrue("Large message must decrypt", decrypted.isOk());
+        Assert.assertEquals(new DecryptedPayload(plaintext), decrypted.getResult());
+
+        var sink = new ByteArrayOutputStream();
+        Assert.assertEquals(plaintext.length, (long) streamed.decrypt(sessionKey, sink).getResult());
+        Assert.assertArrayEquals(plaintext, sink.toByteArray());
+
+        var wrongKey = sessionKey.clone();
+        wrongKey[0] ^= 1;
+        Assert.assertEquals(DecryptionError.INVALID_SESSION_KEY, streamed.decrypt(wrongKey).getError());
+    }
+
+    private static byte plaintextAt(long position) {
+        return (byte) ('a' + position % 26);
+    }
+
+    @Test
+    public void largeBodyDecryptsIntoASinkWithoutHoldingThePlaintext() throws Exception {
+        var sessionKey = Base64.getUrlDecoder().decode("6fsZq-Md2jvAM7Bk8qLv0z59y68np5IxLK4RLgI_zog");
+        var iv = Base64.getUrlDecoder().decode("tYENu1VjK9bH7Ppn");
+        var length = 4 * 1024 * 1024 + 3;
+
+        // Encrypted a chunk at a time, so the whole plaintext never exists here either
+        var cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        cipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(sessionKey, "AES"), new GCMParameterSpec(128, iv));
+        var json = new ByteArrayOutputStream();
+        json.write("{\"kid\":\"YKQRP2M3HZFPZDNXTHQBYFPB5M\",\"enc\":\"A256GCM\",\"cty\":\"b5+jwk+json\",\"iv\":\"tYENu1VjK9bH7Ppn\",\"data\":\"".getBytes(StandardCharsets.UTF_8));
+        try(var data = Base64.getUrlEncoder().withoutPadding().wrap(json)) {
+            var chunk = new byte[64 * 1024];
+            for(long position = 0; position < length; position += chunk.length) {
+                var chunkLength = (int) Math.min(chunk.length, length - position);
+                for(int i = 0; i < chunkLength; i++) {
+                    chunk[i] = plaintextAt(position + i);
+                }
+                data.write(cipher.update(chunk, 0, chunkLength));
+            }
+            data.write(cipher.doFinal());
+        }
+        json.write("\"}".getBytes(StandardCharsets.UTF_8));
+
+        var bytes = json.toByteArray();
+        var streamed = EncryptedMessageReader.read(mapper.getFactory(), bytes, 0, bytes.length).getResult();
+        Assert.assertEquals(length, streamed.getPlaintextLength());
+
+        // Checks every byte as it arrives instead of collecting them
+        var sink = new OutputStream() {
+            long written = 0;
+
+            @Override
+            public void write(int b) {
+                write(new byte[]{(byte) b}, 0, 1);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+                for(int i = 0; i < len; i++, written++) {
+                    if(b[off + i] != plaintextAt(written)) {
+                        throw new AssertionError("Wrong plaintext at " + written);
+                    }
+                }
+            }
+        };
+
+        var decrypted = streamed.decrypt(sessionKey, sink);
+        Assert.assertTrue("Large message must decrypt", decrypted.isOk());
+        Assert.assertEquals(length, (long) decrypted.getResult());
+        Assert.assertEquals(length, sink.written);
+    }
 }
@@ -0,0 +1,53 @@
+package com.onepassword.burpanalyzer;
+
+import com.onepassword.burpanalyzer.util.HeaderIndex;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Optional;
+
+public class HeaderIndexTests {
+    @Test
+    public void extractsSessionAndMacInOnePass() {
+        var index = HeaderIndex.of(List.of(
+            "POST /api/v1/vault HTTP/1.1",
+            "Host: my.1password.com",
+            "x-agilebits-session-id: ABCDEFGHIJKLMNOPQRSTUVWXYZ",
+            "X-AGILEBITS-MAC: v1|42|mac-value"
+        ));
+
+        Assert.assertEquals(Optional.of("ABCDEFGHIJKLMNOPQRSTUVWXYZ"), index.getSessionId());
+        Assert.assertTrue(index.hasMacHeader());
+        Assert.assertTrue(index.isMacHeaderWellFormed());
+        Assert.assertEquals(Optional.of("v1"), index.getMacVersion());
+        Assert.assertEquals(Optional.of(42), index.getRequestId());
+        Assert.assertEquals(Optional.of("mac-value"), index.getMacValue());
+        Assert.assertFalse(index.hasMultipleSessionIdHeaders());
+    }
+
+    @Test
+    public void onlyDifferingDuplicatesCount() {
+        var sameTwice = HeaderIndex.of(List.of("X-AgileBits-Session-ID: a", "X-AgileBits-Session-ID: a"));
+        Assert.assertFalse(sameTwice.hasMultipleSessionIdHeaders());
+
+        var differing = HeaderIndex.of(List.of("X-AgileBits-MAC: v1|1|a", "X-AgileBits-MAC: v1|2|b"));
+        Assert.assertTrue(differing.hasMultipleMacHeaders());
+        Assert.assertEquals(Optional.of(1), differing.getRequestId());
+    }
+
+    @Test
+    public void malformedMacHasNoRequestId() {
+        var index = HeaderIndex.of(List.of("X-AgileBits-MAC: v1|not-a-number"));
+
+        Assert.assertTrue(index.hasMacHeader());
+        Assert.assertFalse(index.isMacHeaderWellFormed());
+        Assert.assertEquals(Optional.empty(), index.getRequestId());
+    }
+
+    @Test
+    public void recognisesOnePasswordCsp() {
+        Assert.assertTrue(HeaderIndex.of(List.of("HTTP/1.1 200 OK", "Content-Security-Policy: default-src https://c.1password.com")).hasOnePasswordCsp());
+        Assert.assertFalse(HeaderIndex.of(List.of("HTTP/1.1 200 OK", "Content-Security-Policy: default-src 'self'")).hasOnePasswordCsp());
+    }
+}
@@ -0,0 +1,54 @@
+package com.onepassword.burpanalyzer;
+
+import com.onepassword.burpanalyzer.util.HttpMessageSplicer;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+
+public class HttpMessageSplicerTests {
+    private static final String HEADERS = "POST /api/v1/vault HTTP/1.1\r\n" +
+            "Host: my.1password.com\r\n" +
+            "x-agilebits-mac: v1|1|old\r\n" +
+            "Content-Length: 4\r\n" +
+            "\r\n";
+
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.ISO_8859_1);
+    }
+
+    private static String text(byte[] bytes) {
+        return new String(bytes, StandardCharsets.ISO_8859_1);
+    }
+
+    @Test
+    public void replacesOnlyTheHeaderValue() {
+        var message = bytes(HEADERS + "body");
+        var updated = HttpMessageSplicer.replaceHeaderValue(message, HEADERS.length(), "X-AgileBits-MAC", "v1|2|new-value");
+
+        Assert.assertEquals(HEADERS.replace("v1|1|old", "v1|2|new-value") + "body", text(updated.orElseThrow()));
+    }
+
+    @Test
+    public void missingHeaderIsReported() {
+        var message = bytes("GET / HTTP/1.1\r\nHost: a\r\n\r\nX-AgileBits-MAC: v1|1|in-the-body");
+        Assert.assertEquals(Optional.empty(), HttpMessageSplicer.replaceHeaderValue(message, 27, "X-AgileBits-MAC", "v1|2|new"));
+    }
+
+    @Test
+    public void replacingBodyUpdatesContentLength() {
+        var message = bytes(HEADERS + "body");
+        var updated = HttpMessageSplicer.replaceBody(message, HEADERS.length(), bytes("a much longer body"));
+
+        Assert.assertEquals(HEADERS.replace("Content-Length: 4", "Content-Length: 18") + "a much longer body", text(updated));
+    }
+
+    @Test
+    public void replacingBodyWithoutContentLengthKeepsHeaders() {
+        var headers = "HTTP/1.1 200 OK\r\nContent-Type: application/json\r\n\r\n";
+        var updated = HttpMessageSplicer.replaceBody(bytes(headers + "{}"), headers.length(), bytes("{\"kid\":\"a\"}"));
+
+        Assert.assertEquals(headers + "{\"kid\":\"a\"}", text(updated));
+    }
+}
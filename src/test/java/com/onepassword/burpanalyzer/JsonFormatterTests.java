@@ -0,0 +1,57 @@
+package com.onepassword.burpanalyzer;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.onepassword.burpanalyzer.model.DecryptedPayload;
+import com.onepassword.burpanalyzer.util.JsonFormatter;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+public class JsonFormatterTests {
+    @Test
+    public void matchesTreeBasedPrettyPrinting() throws Exception {
+        var mapper = new ObjectMapper();
+        var inputs = List.of(
+                "{\"users\":[],\"totalCount\":0}",
+                "[1,2.5,-3e10,12345678901234567890,true,false,null]",
+                "{\"nested\":{\"a\":[{\"b\":\"c\\\"d\\u00e9\"}],\"empty\":{}}}",
+                "  \"just a string\"  ",
+                "42");
+
+        for(var input : inputs) {
+            var expected = mapper.writerWithDefaultPrettyPrinter().writeValueAsString(mapper.readTree(input));
+            Assert.assertEquals("Formatting must not change for " + input, expected, JsonFormatter.prettyPrint(input));
+        }
+    }
+
+    @Test
+    public void leavesOtherTextAsItIs() {
+        for(var input : List.of("", "   ", "not json", "{\"a\":", "{\"a\":1} trailing", "{\"a\":1}{\"b\":2}")) {
+            Assert.assertSame("Must be returned unchanged: " + input, input, JsonFormatter.prettyPrint(input));
+        }
+    }
+
+    @Test
+    public void skipsPayloadsAboveTheLimit() {
+        var input = "{\"a\":1}";
+
+        Assert.assertSame(input, JsonFormatter.prettyPrint(input, input.length() - 1));
+        Assert.assertEquals("{\n  \"a\" : 1\n}", JsonFormatter.prettyPrint(input, input.length()));
+    }
+
+    @Test
+    public void payloadEqualityComparesJson() {
+        var compact = new DecryptedPayload("{\"a\":1,\"b\":[true]}".getBytes(StandardCharsets.UTF_8));
+        var pretty = new DecryptedPayload(JsonFormatter.prettyPrint("{\"a\":1,\"b\":[true]}").getBytes(StandardCharsets.UTF_8));
+        var other = new DecryptedPayload("{\"a\":2}".getBytes(StandardCharsets.UTF_8));
+        var empty = new DecryptedPayload(new byte[0]);
+
+        Assert.assertEquals(compact, pretty);
+        Assert.assertNotEquals(compact, other);
+        Assert.assertNotEquals(empty, compact);
+        Assert.assertNotEquals(compact, empty);
+        Assert.assertEquals(empty, new DecryptedPayload(new byte[0]));
+    }
+}
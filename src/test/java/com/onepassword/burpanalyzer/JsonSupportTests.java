@@ -0,0 +1,40 @@
+package com.onepassword.burpanalyzer;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.onepassword.burpanalyzer.model.DecryptedPayload;
+import com.onepassword.burpanalyzer.model.EncryptedMessage;
+import com.onepassword.burpanalyzer.model.EncryptedMessageReader;
+import com.onepassword.burpanalyzer.util.JsonSupport;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+public class JsonSupportTests {
+    private final byte[] sessionKey = Base64.getUrlDecoder().decode("6fsZq-Md2jvAM7Bk8qLv0z59y68np5IxLK4RLgI_zog");
+    private final byte[] iv = Base64.getUrlDecoder().decode("tYENu1VjK9bH7Ppn");
+
+    @Test
+    public void sharedWriterMatchesAFreshMapper() throws Exception {
+        var message = new DecryptedPayload("{\"users\":[],\"totalCount\":0}".getBytes(StandardCharsets.UTF_8))
+                .encrypt("YKQRP2M3HZFPZDNXTHQBYFPB5M", iv, sessionKey).getResult();
+
+        var shared = JsonSupport.encryptedMessageWriter().writeValueAsString(message);
+
+        Assert.assertEquals(new ObjectMapper().writeValueAsString(message), shared);
+        Assert.assertEquals(message, JsonSupport.encryptedMessageReader().readValue(shared, EncryptedMessage.class));
+    }
+
+    @Test
+    public void sharedFactoryReadsEncryptedMessages() throws Exception {
+        var json = "{\"kid\":\"YKQRP2M3HZFPZDNXTHQBYFPB5M\",\"enc\":\"A256GCM\",\"cty\":\"b5+jwk+json\",\"iv\":\"tYENu1VjK9bH7Ppn\"," +
+                "\"data\":\"ajyndPzqt8mnc2R4x_ZGJSmRY6qqbOKKiEljvvNce1xtHNmc_jdbm5oBbQ\"}";
+        var bytes = json.getBytes(StandardCharsets.UTF_8);
+
+        var read = EncryptedMessageReader.read(JsonSupport.factory(), bytes, 0, bytes.length);
+
+        Assert.assertTrue(read.isOk());
+        Assert.assertEquals(JsonSupport.encryptedMessageReader().readValue(json, EncryptedMessage.class), read.getResult());
+    }
+}
@@ -0,0 +1,37 @@
+package com.onepassword.burpanalyzer;
+
+import com.onepassword.burpanalyzer.util.MappedText;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+
+public class MappedTextTests {
+    @Test
+    public void readsOneCharPerByte() throws IOException {
+        var file = Files.createTempFile("mapped-text", ".txt");
+        try {
+            Files.write(file, new byte[]{'{', '"', (byte) 0xe9, '"', '}'});
+            var text = MappedText.map(file);
+
+            Assert.assertEquals(5, text.length());
+            Assert.assertEquals('é', text.charAt(2));
+            Assert.assertEquals("\"é\"", text.subSequence(1, 4));
+            Assert.assertEquals("{\"é\"}", text.toString());
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void rangesPastTheEndAreRejected() throws IOException {
+        var file = Files.createTempFile("mapped-text", ".txt");
+        try {
+            Files.write(file, new byte[]{'a', 'b'});
+            MappedText.map(file).subSequence(1, 3);
+        } finally {
+            Files.delete(file);
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.onepassword.burpanalyzer;
+
+import com.onepassword.burpanalyzer.util.RawHeaderFilter;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+
+public class RawHeaderFilterTests {
+    private static byte[] message(String text) {
+        return text.getBytes(StandardCharsets.ISO_8859_1);
+    }
+
+    @Test
+    public void findsMacHeaderInAnyCase() {
+        Assert.assertTrue(RawHeaderFilter.mayBeOnePasswordRequest(message("GET /api HTTP/1.1\r\nHost: a\r\nx-agilebits-mac: v1|1|abc\r\n\r\n")));
+        Assert.assertTrue(RawHeaderFilter.mayBeOnePasswordRequest(message("GET /api HTTP/1.1\nX-AgileBits-MAC: v1|1|abc\n\n")));
+    }
+
+    @Test
+    public void ignoresMarkersOutsideTheHeaders() {
+        Assert.assertFalse(RawHeaderFilter.mayBeOnePasswordRequest(message("POST /api HTTP/1.1\r\nHost: a\r\n\r\nX-AgileBits-MAC: v1|1|abc\r\n")));
+        Assert.assertFalse(RawHeaderFilter.mayBeOnePasswordRequest(message("GET /X-AgileBits-MAC HTTP/1.1\r\nHost: a\r\n\r\n")));
+        Assert.assertFalse(RawHeaderFilter.mayBeOnePasswordRequest(message("GET / HTTP/1.1\r\nReferer: X-AgileBits-MAC\r\n\r\n")));
+    }
+
+    @Test
+    public void findsOnePasswordCsp() {
+        Assert.assertTrue(RawHeaderFilter.mayBeOnePasswordResponse(message("HTTP/1.1 200 OK\r\nContent-Security-Policy: default-src https://c.1password.com\r\n\r\n{}")));
+        Assert.assertFalse(RawHeaderFilter.mayBeOnePasswordResponse(message("HTTP/1.1 200 OK\r\nContent-Security-Policy: default-src 'self'\r\nX-Note: c.1password.com\r\n\r\n")));
+        Assert.assertFalse(RawHeaderFilter.mayBeOnePasswordResponse(message("HTTP/1.1 200 OK\r\n\r\nContent-Security-Policy: default-src https://c.1password.com")));
+    }
+}
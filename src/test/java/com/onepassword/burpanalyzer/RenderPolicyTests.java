@@ -0,0 +1,70 @@
+package com.onepassword.burpanalyzer;
+
+import com.onepassword.burpanalyzer.util.RenderPolicy;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.time.Duration;
+
+public class RenderPolicyTests {
+    private RenderPolicy policy() {
+        return new RenderPolicy(1000 * 1000, 10 * 1000 * 1000, 1000, Duration.ofMillis(100));
+    }
+
+    @Test
+    public void degradesWithSize() {
+        var policy = policy();
+
+        Assert.assertEquals(RenderPolicy.Mode.HIGHLIGHTED, policy.modeFor(0));
+        Assert.assertEquals(RenderPolicy.Mode.HIGHLIGHTED, policy.modeFor(1000 * 1000));
+        Assert.assertEquals(RenderPolicy.Mode.PLAIN, policy.modeFor(1000 * 1000 + 1));
+        Assert.assertEquals(RenderPolicy.Mode.PLAIN, policy.modeFor(10 * 1000 * 1000));
+        Assert.assertEquals(RenderPolicy.Mode.PAGED, policy.modeFor(10 * 1000 * 1000 + 1));
+    }
+
+    @Test
+    public void followsMeasuredRenderTimes() {
+        var policy = policy();
+
+        // 200 ns per char: only 500,000 chars fit in 100 ms
+        policy.recordRender(RenderPolicy.Mode.HIGHLIGHTED, 1000 * 1000, Duration.ofMillis(200).toNanos());
+        Assert.assertEquals(500 * 1000, policy.getHighlightMaxChars());
+        Assert.assertEquals(RenderPolicy.Mode.PLAIN, policy.modeFor(600 * 1000));
+
+        // Fast renders never raise a limit above what was configured
+        policy.recordRender(RenderPolicy.Mode.PLAIN, 1000 * 1000, 1000);
+        Assert.assertEquals(10 * 1000 * 1000, policy.getPlainMaxChars());
+    }
+
+    @Test
+    public void ignoresSmallAndPagedRenders() {
+        var policy = policy();
+
+        policy.recordRender(RenderPolicy.Mode.HIGHLIGHTED, 1000, Duration.ofSeconds(1).toNanos());
+        policy.recordRender(RenderPolicy.Mode.PAGED, 1000 * 1000, Duration.ofSeconds(10).toNanos());
+
+        Assert.assertEquals(1000 * 1000, policy.getHighlightMaxChars());
+        Assert.assertEquals(10 * 1000 * 1000, policy.getPlainMaxChars());
+    }
+
+    @Test
+    public void plainTextAllowsAtLeastAsMuchAsHighlighting() {
+        var policy = policy();
+
+        policy.recordRender(RenderPolicy.Mode.PLAIN, 1000 * 1000, Duration.ofSeconds(10).toNanos());
+
+        Assert.assertEquals(policy.getHighlightMaxChars(), policy.getPlainMaxChars());
+        Assert.assertEquals(RenderPolicy.Mode.PAGED, policy.modeFor(1000 * 1000 + 1));
+    }
+
+    @Test
+    public void pagesDontSplitSurrogatePairs() {
+        var text = "ab😀cd"; // The emoji takes chars 2 and 3
+
+        Assert.assertEquals(0, RenderPolicy.pageStart(text, 0, 3));
+        Assert.assertEquals(2, RenderPolicy.pageStart(text, 1, 3));
+        Assert.assertEquals(text.length(), RenderPolicy.pageStart(text, 2, 3));
+        Assert.assertEquals(2, RenderPolicy.pageCount(text.length(), 3));
+        Assert.assertEquals(1, RenderPolicy.pageCount(0, 3));
+    }
+}
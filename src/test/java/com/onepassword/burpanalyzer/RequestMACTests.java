@@ -13,7 +13,10 @@ import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
 import java.util.Base64;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
 
 @RunWith(Parameterized.class)
 public class RequestMACTests {
@@ -73,4 +76,20 @@ public class RequestMACTests {
         Assert.assertTrue("MAC generation works", headerRes.isOk());
         Assert.assertEquals("MAC generation generates expected value", this.expected, headerRes.getResult());
     }
+
+    @Test
+    public void createMacForRequestFromManyThreads() throws InterruptedException, ExecutionException {
+        var mac = new RequestMAC(VersionIndicator.v1, this.requestMethod, this.sessionId,
+                                    this.requestId, this.url);
+
+        var pool = Executors.newFixedThreadPool(4);
+        try {
+            var headers = pool.invokeAll(Collections.nCopies(16, () -> mac.generateRequestHeader(this.sessionKey).getResult()));
+            for(var header: headers) {
+                Assert.assertEquals("MAC generation is stable across threads", this.expected, header.get());
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
 }
@@ -0,0 +1,132 @@
+package com.onepassword.burpanalyzer;
+
+import burp.IParameter;
+import burp.IRequestInfo;
+import com.onepassword.burpanalyzer.processing.RequestMACGenerateError;
+import com.onepassword.burpanalyzer.util.HeaderIndex;
+import com.onepassword.burpanalyzer.util.RequestResigner;
+import com.onepassword.burpanalyzer.util.SessionStateCache;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.net.URI;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+
+public class RequestResignerTests {
+    // Same request as the first RequestMACTests case, which is signed as "v1|6|oBnE8JLpG2Othzgy"
+    private static final String SESSION_ID = "RDPMIFQWUJBWZFDBKURHNRFVRA";
+    private static final byte[] SESSION_KEY = Base64.getUrlDecoder().decode("ETmGs4U7ReMolW1J64ZAmmksXbQFFbeyRPW6zPWj3VM");
+    private static final List<String> HEADERS = List.of(
+            "GET /api/v1/invites HTTP/1.1",
+            "Host: my.b5local.com:3000",
+            "X-AgileBits-Session-ID: " + SESSION_ID,
+            "X-AgileBits-MAC: v1|5|previousMacValue"
+    );
+    private static final String REQUEST = String.join("\r\n", HEADERS) + "\r\n\r\n";
+
+    private final SessionStateCache cache = new SessionStateCache(16, Duration.ofHours(1), System::nanoTime);
+    private final RequestResigner resigner = new RequestResigner(cache);
+
+    private static class FakeRequestInfo implements IRequestInfo {
+        @Override
+        public String getMethod() { return "GET"; }
+
+        @Override
+        public URL getUrl() {
+            try {
+                return new URI("https://my.b5local.com:3000/api/v1/invites").toURL();
+            } catch(Exception e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        @Override
+        public List<String> getHeaders() { return HEADERS; }
+
+        @Override
+        public List<IParameter> getParameters() { return Collections.emptyList(); }
+
+        @Override
+        public int getBodyOffset() { return REQUEST.length(); }
+
+        @Override
+        public byte getContentType() { return 0; }
+    }
+
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.ISO_8859_1);
+    }
+
+    private static String text(byte[] bytes) {
+        return new String(bytes, StandardCharsets.ISO_8859_1);
+    }
+
+    @Test
+    public void resignsWithTheRequestIdAfterTheRequestsOwn() {
+        cache.setSessionKey(SESSION_ID, SESSION_KEY);
+
+        var resigned = resigner.resign(new FakeRequestInfo(), bytes(REQUEST));
+
+        Assert.assertTrue(resigned.isOk());
+        Assert.assertEquals(REQUEST.replace("v1|5|previousMacValue", "v1|6|oBnE8JLpG2Othzgy"), text(resigned.getResult()));
+    }
+
+    @Test
+    public void countsOnFromNewerObservedRequestIds() {
+        cache.setSessionKey(SESSION_ID, SESSION_KEY);
+        cache.setLatestRequestId(SESSION_ID, 41);
+
+        var resigned = resigner.resign(new FakeRequestInfo(), bytes(REQUEST));
+
+        Assert.assertEquals(42, (int) HeaderIndex.of(List.of(text(resigned.getResult()).split("\r\n"))).getRequestId().orElseThrow());
+    }
+
+    @Test
+    public void missingSessionKeyIsReported() {
+        var resigned = resigner.resign(new FakeRequestInfo(), bytes(REQUEST));
+
+        Assert.assertFalse(resigned.isOk());
+        Assert.assertEquals(RequestMACGenerateError.MISSING_SESSION_KEY, resigned.getError());
+    }
+
+    @Test
+    public void concurrentResignsNeverShareARequestId() throws InterruptedException, ExecutionException {
+        cache.setSessionKey(SESSION_ID, SESSION_KEY);
+        final int threads = 8;
+        final int perThread = 250;
+
+        Callable<List<Integer>> task = () -> {
+            var requestIds = new ArrayList<Integer>();
+            for(int i = 0; i < perThread; i++) {
+                var resigned = resigner.resign(new FakeRequestInfo(), bytes(REQUEST));
+                var headers = List.of(text(resigned.getResult()).split("\r\n"));
+                requestIds.add(HeaderIndex.of(headers).getRequestId().orElseThrow());
+            }
+            return requestIds;
+        };
+
+        var executor = Executors.newFixedThreadPool(threads);
+        try {
+            var seen = new HashSet<Integer>();
+            for(var future : executor.invokeAll(Collections.nCopies(threads, task))) {
+                seen.addAll(future.get());
+            }
+
+            Assert.assertEquals(threads * perThread, seen.size());
+            Assert.assertEquals(6, (int) Collections.min(seen));
+            Assert.assertEquals(5 + threads * perThread, (int) Collections.max(seen));
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,214 @@
+package com.onepassword.burpanalyzer;
+
+import com.onepassword.burpanalyzer.util.SessionStateCache;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+public class SessionStateCacheTests {
+    private final SessionStateCache cache = SessionStateCache.getInstance();
+
+    private static String newSessionId() {
+        return UUID.randomUUID().toString();
+    }
+
+    @Test
+    public void unknownSessionIsEmpty() {
+        var sessionId = newSessionId();
+        Assert.assertEquals(Optional.empty(), cache.findLatestRequestId(sessionId));
+        Assert.assertEquals(Optional.empty(), cache.findSessionKey(sessionId));
+    }
+
+    @Test
+    public void latestRequestIdNeverMovesBackwards() {
+        var sessionId = newSessionId();
+        cache.setLatestRequestId(sessionId, 12);
+        cache.setLatestRequestId(sessionId, 10);
+
+        Assert.assertEquals(Optional.of(12), cache.findLatestRequestId(sessionId));
+    }
+
+    @Test
+    public void sessionKeyAndRequestIdAreTrackedTogether() {
+        var sessionId = newSessionId();
+        var sessionKey = new byte[]{1, 2, 3};
+        cache.setSessionKey(sessionId, sessionKey);
+        cache.setLatestRequestId(sessionId, 3);
+
+        Assert.assertArrayEquals(sessionKey, cache.findSessionKey(sessionId).orElseThrow());
+        Assert.assertEquals(Optional.of(3), cache.findLatestRequestId(sessionId));
+    }
+
+    @Test
+    public void concurrentOutOfOrderUpdatesKeepMaximum() throws InterruptedException, ExecutionException {
+        var sessionId = newSessionId();
+        var pool = Executors.newFixedThreadPool(8);
+        try {
+            var updates = IntStream.rangeClosed(1, 1000)
+                .map(i -> 1001 - i)
+                .mapToObj(i -> (Callable<Void>) () -> {
+                    cache.setLatestRequestId(sessionId, i);
+                    return null;
+                })
+                .collect(Collectors.toList());
+
+            for(var update: pool.invokeAll(updates)) {
+                update.get();
+            }
+        } finally {
+            pool.shutdown();
+        }
+
+        Assert.assertEquals(Optional.of(1000), cache.findLatestRequestId(sessionId));
+    }
+
+    @Test
+    public void reservationNeedsKnownRequestId() {
+        Assert.assertEquals(Optional.empty(), cache.reserveNextRequestId(newSessionId()));
+    }
+
+    @Test
+    public void reservationsAreConsecutive() {
+        var sessionId = newSessionId();
+        cache.setLatestRequestId(sessionId, 41);
+
+        Assert.assertEquals(Optional.of(42), cache.reserveNextRequestId(sessionId));
+        Assert.assertEquals(Optional.of(43), cache.reserveRequestIds(sessionId, 5));
+        Assert.assertEquals(Optional.of(48), cache.reserveNextRequestId(sessionId));
+        Assert.assertEquals(Optional.of(48), cache.findLatestRequestId(sessionId));
+    }
+
+    @Test
+    public void concurrentReservationsAreUnique() throws InterruptedException, ExecutionException {
+        var sessionId = newSessionId();
+        cache.setLatestRequestId(sessionId, 0);
+
+        var pool = Executors.newFixedThreadPool(8);
+        try {
+            var reservations = pool.invokeAll(Collections.nCopies(2000, (Callable<Integer>) () -> cache.reserveNextRequestId(sessionId).orElseThrow()));
+            var ids = new HashSet<Integer>();
+            for(var reservation: reservations) {
+                ids.add(reservation.get());
+            }
+
+            Assert.assertEquals("Every reservation must be unique", 2000, ids.size());
+            Assert.assertEquals(Optional.of(2000), cache.findLatestRequestId(sessionId));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void leastRecentlyUsedSessionsAreEvicted() {
+        var now = new AtomicLong();
+        var bounded = new SessionStateCache(3, Duration.ofDays(1), now::get);
+
+        for(var sessionId: List.of("a", "b", "c")) {
+            now.addAndGet(Duration.ofMinutes(1).toNanos());
+            bounded.setLatestRequestId(sessionId, 1);
+        }
+
+        // Using "a" again makes "b" the least recently used session
+        now.addAndGet(Duration.ofMinutes(1).toNanos());
+        Assert.assertTrue(bounded.findLatestRequestId("a").isPresent());
+
+        now.addAndGet(Duration.ofMinutes(1).toNanos());
+        bounded.setLatestRequestId("d", 1);
+
+        Assert.assertEquals(Optional.empty(), bounded.findLatestRequestId("b"));
+        Assert.assertTrue(bounded.findLatestRequestId("a").isPresent());
+        Assert.assertTrue(bounded.findLatestRequestId("c").isPresent());
+        Assert.assertTrue(bounded.findLatestRequestId("d").isPresent());
+        Assert.assertEquals(1, bounded.getStatistics().getEvictions());
+        Assert.assertEquals(3, bounded.getStatistics().getSessions());
+    }
+
+    @Test
+    public void idleSessionsExpire() {
+        var now = new AtomicLong();
+        var bounded = new SessionStateCache(10, Duration.ofHours(1), now::get);
+
+        bounded.setSessionKey("idle", new byte[]{1});
+        now.addAndGet(Duration.ofMinutes(61).toNanos());
+
+        Assert.assertEquals(Optional.empty(), bounded.findSessionKey("idle"));
+
+        var statistics = bounded.getStatistics();
+        Assert.assertEquals(1, statistics.getExpirations());
+        Assert.assertEquals(1, statistics.getMisses());
+        Assert.assertEquals(0, statistics.getSessions());
+    }
+
+    @Test
+    public void expiredSessionsAreNotSnapshotted() {
+        var now = new AtomicLong();
+        var bounded = new SessionStateCache(10, Duration.ofHours(1), now::get);
+
+        bounded.setSessionKey("idle", new byte[]{1});
+        now.addAndGet(Duration.ofMinutes(40).toNanos());
+        bounded.setSessionKey("active", new byte[]{2});
+        now.addAndGet(Duration.ofMinutes(30).toNanos());
+
+        var snapshots = bounded.snapshots();
+        Assert.assertEquals(1, snapshots.size());
+        Assert.assertEquals("active", snapshots.get(0).getSessionId());
+        Assert.assertEquals(Duration.ofMinutes(30), snapshots.get(0).getIdle());
+        Assert.assertEquals(Optional.empty(), bounded.snapshot("idle"));
+    }
+
+    @Test
+    public void writesDuringEvictionAreKept() throws InterruptedException, ExecutionException {
+        var bounded = new SessionStateCache(1024, Duration.ofHours(1), System::nanoTime);
+        var rounds = 200;
+
+        // Sessions are restored as idle for a while, so evictions keep picking them. Each writer first restores a
+        // session that is idle even longer, making it the first to go, and then writes to it: once written it is
+        // more recently used than any restored session, so an eviction must not drop it or the write.
+        // The written sessions alone never fill the cache, so none of them is ever the least recently used.
+        Callable<Void> churn = () -> {
+            for(int i = 0; i < rounds * 25; i++) {
+                bounded.restore(new SessionStateCache.Snapshot("churn-" + i, 1, null, Duration.ofMinutes(30)));
+            }
+            return null;
+        };
+        var writers = IntStream.range(0, 4).mapToObj(writer -> (Callable<Void>) () -> {
+            for(int i = 0; i < rounds; i++) {
+                var sessionId = "written-" + writer + "-" + i;
+                var key = new byte[]{(byte) writer, (byte) i, (byte) (i >> 8)};
+                bounded.restore(new SessionStateCache.Snapshot(sessionId, null, null, Duration.ofMinutes(45)));
+                bounded.setSessionKey(sessionId, key);
+                bounded.setLatestRequestId(sessionId, i);
+
+                Assert.assertArrayEquals(key, bounded.findSessionKey(sessionId).orElseThrow());
+                Assert.assertEquals(Optional.of(i), bounded.findLatestRequestId(sessionId));
+            }
+            return null;
+        }).collect(Collectors.toList());
+
+        var pool = Executors.newFixedThreadPool(5);
+        try {
+            var tasks = new ArrayList<>(writers);
+            tasks.add(churn);
+            for(var task: pool.invokeAll(tasks)) {
+                task.get();
+            }
+        } finally {
+            pool.shutdown();
+        }
+
+        Assert.assertTrue(bounded.getStatistics().getEvictions() > 0);
+    }
+}
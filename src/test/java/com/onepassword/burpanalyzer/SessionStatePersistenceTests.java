@@ -0,0 +1,127 @@
+package com.onepassword.burpanalyzer;
+
+import com.onepassword.burpanalyzer.util.SessionStateCache;
+import com.onepassword.burpanalyzer.util.SessionStatePersistence;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+
+public class SessionStatePersistenceTests {
+    private static void waitUntil(BooleanSupplier condition) throws InterruptedException {
+        for(int i = 0; i < 500 && !condition.getAsBoolean(); i++) {
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    public void stateSurvivesRestart() throws IOException, InterruptedException {
+        var directory = Files.createTempDirectory("session-state");
+        var file = directory.resolve("sessions.bin");
+        var sessionKey = new byte[]{1, 2, 3, 4};
+
+        var before = new SessionStateCache(10, Duration.ofDays(1), new AtomicLong()::get);
+        var persistence = new SessionStatePersistence(file, before, Clock.systemUTC(), Assert::fail);
+        persistence.start();
+        before.setSessionKey("session", sessionKey);
+        before.setLatestRequestId("session", 7);
+        before.setLatestRequestId("session", 9);
+        persistence.stop();
+
+        var after = new SessionStateCache(10, Duration.ofDays(1), new AtomicLong()::get);
+        var restored = new SessionStatePersistence(file, after, Clock.systemUTC(), Assert::fail);
+        restored.start();
+        waitUntil(() -> after.findLatestRequestId("session").isPresent());
+        restored.stop();
+
+        Assert.assertEquals(Optional.of(9), after.findLatestRequestId("session"));
+        Assert.assertArrayEquals(sessionKey, after.findSessionKey("session").orElseThrow());
+    }
+
+    @Test
+    public void truncatedFileKeepsCompleteRecords() throws IOException, InterruptedException {
+        var directory = Files.createTempDirectory("session-state");
+        var file = directory.resolve("sessions.bin");
+
+        var before = new SessionStateCache(10, Duration.ofDays(1), new AtomicLong()::get);
+        var persistence = new SessionStatePersistence(file, before, Clock.systemUTC(), Assert::fail);
+        persistence.start();
+        before.setLatestRequestId("complete", 3);
+        persistence.stop();
+
+        // Simulate Burp being killed halfway through appending a record
+        Files.write(file, new byte[]{0, 0, 0, 40, 1, 2}, StandardOpenOption.APPEND);
+
+        var after = new SessionStateCache(10, Duration.ofDays(1), new AtomicLong()::get);
+        var restored = new SessionStatePersistence(file, after, Clock.systemUTC(), message -> {});
+        restored.start();
+        waitUntil(() -> after.findLatestRequestId("complete").isPresent());
+        restored.stop();
+
+        Assert.assertEquals(Optional.of(3), after.findLatestRequestId("complete"));
+    }
+
+    @Test
+    public void savingDoesNotRefreshIdleSessions() throws IOException, InterruptedException {
+        var directory = Files.createTempDirectory("session-state");
+        var file = directory.resolve("sessions.bin");
+        var clock = Clock.fixed(Instant.now(), ZoneOffset.UTC);
+
+        var beforeNow = new AtomicLong();
+        var before = new SessionStateCache(10, Duration.ofDays(1), beforeNow::get);
+        var persistence = new SessionStatePersistence(file, before, clock, Assert::fail);
+        persistence.start();
+        before.setSessionKey("idle", new byte[]{1, 2, 3, 4});
+        beforeNow.addAndGet(Duration.ofHours(20).toNanos());
+        persistence.stop();
+
+        var afterNow = new AtomicLong();
+        var after = new SessionStateCache(10, Duration.ofDays(1), afterNow::get);
+        var restored = new SessionStatePersistence(file, after, clock, Assert::fail);
+        restored.start();
+        waitUntil(() -> after.snapshot("idle").isPresent());
+        restored.stop();
+
+        // Saved after 20 idle hours, so it has 4 hours left rather than a fresh day
+        afterNow.addAndGet(Duration.ofHours(5).toNanos());
+        Assert.assertEquals(Optional.empty(), after.findSessionKey("idle"));
+    }
+
+    @Test
+    public void lastSavedSessionKeyWins() throws IOException, InterruptedException {
+        var directory = Files.createTempDirectory("session-state");
+        var file = directory.resolve("sessions.bin");
+        var correctedKey = new byte[]{5, 6, 7, 8};
+
+        var before = new SessionStateCache(10, Duration.ofDays(1), new AtomicLong()::get);
+        var persistence = new SessionStatePersistence(file, before, Clock.systemUTC(), Assert::fail);
+        persistence.start();
+        before.setSessionKey("session", new byte[]{1, 2, 3, 4});
+        waitUntil(() -> {
+            try {
+                return Files.size(file) > 0;
+            } catch(IOException e) {
+                return false;
+            }
+        });
+        before.setSessionKey("session", correctedKey);
+        persistence.stop();
+
+        var after = new SessionStateCache(10, Duration.ofDays(1), new AtomicLong()::get);
+        var restored = new SessionStatePersistence(file, after, Clock.systemUTC(), Assert::fail);
+        restored.start();
+        waitUntil(() -> after.snapshot("session").isPresent());
+        restored.stop();
+
+        Assert.assertArrayEquals(correctedKey, after.findSessionKey("session").orElseThrow());
+    }
+}
@@ -0,0 +1,164 @@
+package com.onepassword.burpanalyzer.ui;
+
+import burp.IExtensionHelpers;
+import burp.IHttpService;
+import burp.IRequestInfo;
+import burp.IResponseInfo;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// In the ui package, as the analysis cache is only visible to the session tab
+public class MessageAnalysisTests {
+    private static final String REQUEST = "GET /api/v1/invites HTTP/1.1\r\nHost: my.1password.com\r\nX-AgileBits-MAC: v1|5|x\r\n\r\n";
+    private static final String RESPONSE = "HTTP/1.1 200 OK\r\nContent-Type: application/json\r\n\r\n{}";
+
+    private final AtomicInteger analyses = new AtomicInteger();
+    private final AtomicInteger conversions = new AtomicInteger();
+    private final IExtensionHelpers helpers = stubHelpers();
+    private final MessageAnalysis.Cache cache = new MessageAnalysis.Cache(helpers);
+
+    // Only what MessageAnalysis uses, built as proxies so they don't depend on the rest of Burp's interfaces
+    private IExtensionHelpers stubHelpers() {
+        return stub(IExtensionHelpers.class, (method, args) -> {
+            switch(method) {
+                case "analyzeRequest":
+                    analyses.incrementAndGet();
+                    return requestInfo((byte[]) args[args.length - 1]);
+                case "analyzeResponse":
+                    analyses.incrementAndGet();
+                    return responseInfo((byte[]) args[0]);
+                case "stringToBytes":
+                    conversions.incrementAndGet();
+                    return ((String) args[0]).getBytes(StandardCharsets.ISO_8859_1);
+                default:
+                    throw new UnsupportedOperationException(method);
+            }
+        });
+    }
+
+    private static IRequestInfo requestInfo(byte[] message) {
+        final var headers = headers(message);
+        return stub(IRequestInfo.class, (method, args) -> {
+            switch(method) {
+                case "getHeaders": return headers;
+                case "getBodyOffset": return bodyOffset(message);
+                case "getMethod": return "GET";
+                default: throw new UnsupportedOperationException(method);
+            }
+        });
+    }
+
+    private static IResponseInfo responseInfo(byte[] message) {
+        final var headers = headers(message);
+        return stub(IResponseInfo.class, (method, args) -> {
+            switch(method) {
+                case "getHeaders": return headers;
+                case "getBodyOffset": return bodyOffset(message);
+                default: throw new UnsupportedOperationException(method);
+            }
+        });
+    }
+
+    private interface Handler {
+        Object handle(String method, Object[] args);
+    }
+
+    private static <T> T stub(Class<T> type, Handler handler) {
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type},
+                (proxy, method, args) -> handler.handle(method.getName(), args)));
+    }
+
+    private static String text(byte[] message) {
+        return new String(message, StandardCharsets.ISO_8859_1);
+    }
+
+    private static int bodyOffset(byte[] message) {
+        return text(message).indexOf("\r\n\r\n") + 4;
+    }
+
+    private static List<String> headers(byte[] message) {
+        return List.of(text(message).substring(0, bodyOffset(message) - 4).split("\r\n"));
+    }
+
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.ISO_8859_1);
+    }
+
+    private static IHttpService service(String host) {
+        return stub(IHttpService.class, (method, args) -> {
+            switch(method) {
+                case "getHost": return host;
+                case "getPort": return 443;
+                case "getProtocol": return "https";
+                default: throw new UnsupportedOperationException(method);
+            }
+        });
+    }
+
+    @Test
+    public void sameMessageIsAnalysedOnce() {
+        var service = service("my.1password.com");
+        var message = bytes(REQUEST);
+
+        var first = cache.analyze(message, true, service);
+        Assert.assertSame(first, cache.analyze(message, true, service));
+        // An equal copy, like Burp handing over the same message in a new array
+        Assert.assertSame(first, cache.analyze(bytes(REQUEST), true, service));
+
+        Assert.assertEquals(1, analyses.get());
+    }
+
+    @Test
+    public void changedMessageIsAnalysedAgain() {
+        var service = service("my.1password.com");
+
+        cache.analyze(bytes(REQUEST), true, service);
+        var changed = cache.analyze(bytes(REQUEST.replace("v1|5|x", "v1|6|y")), true, service);
+        Assert.assertEquals(2, analyses.get());
+        Assert.assertEquals(6, (int) changed.getHeaderIndex().getRequestId().orElseThrow());
+
+        // Only the latest message is kept
+        cache.analyze(bytes(REQUEST), true, service);
+        Assert.assertEquals(3, analyses.get());
+    }
+
+    @Test
+    public void directionAndServiceArePartOfTheMessage() {
+        var service = service("my.1password.com");
+        var message = bytes(REQUEST);
+
+        cache.analyze(message, true, service);
+        cache.analyze(message, true, service("other.1password.com"));
+        Assert.assertEquals(2, analyses.get());
+
+        var response = bytes(RESPONSE);
+        cache.analyze(response, false, null);
+        cache.analyze(response, true, service);
+        Assert.assertEquals(4, analyses.get());
+        Assert.assertSame(cache.analyze(response, true, service), cache.analyze(response, true, service));
+        Assert.assertEquals(4, analyses.get());
+    }
+
+    @Test
+    public void textIsAnalysedOnceWithoutConvertingItAgain() {
+        var service = service("my.1password.com");
+
+        var first = cache.analyze(REQUEST, true, service);
+        Assert.assertSame(first, cache.analyze(new String(REQUEST), true, service));
+        Assert.assertEquals(1, analyses.get());
+        Assert.assertEquals(1, conversions.get());
+
+        // The bytes of the text are the same message
+        Assert.assertSame(first, cache.analyze(bytes(REQUEST), true, service));
+        Assert.assertEquals(1, analyses.get());
+
+        cache.analyze(REQUEST + "changed", true, service);
+        Assert.assertEquals(2, analyses.get());
+        Assert.assertEquals(2, conversions.get());
+    }
+}